@@ -0,0 +1,202 @@
+package com.meows.playersize;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Отложенное (write-behind) сохранение данных игроков.
+// Изменения только помечают запись "грязной", а фоновый поток собирает их в
+// пачку и сохраняет по интервалу или при достижении порога.
+public class AsyncSaveManager {
+
+    private final PlayerSizePlugin plugin;
+    private final PlayerSizeManager sizeManager;
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    // Глубина массовых операций (BatchJobRunner): пока > 0, сохранение откладывается до их конца
+    private final AtomicInteger batchDepth = new AtomicInteger();
+
+    // Метрики для настройки интервала и порога
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedEntries = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+    private volatile long lastFlushAt = System.currentTimeMillis();
+
+    public AsyncSaveManager(PlayerSizePlugin plugin, PlayerSizeManager sizeManager) {
+        this.plugin = plugin;
+        this.sizeManager = sizeManager;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PlayerSize-Saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Проверяем очередь раз в секунду, сам интервал берем из конфига (учитывает reload)
+        executor.scheduleWithFixedDelay(this::tick, 1L, 1L, TimeUnit.SECONDS);
+    }
+
+    public void markDirty(UUID uuid) {
+        dirty.add(uuid);
+
+        // Порог достигнут - не ждем интервала
+        if (batchDepth.get() == 0 && dirty.size() >= plugin.getConfigManager().getStorageFlushThreshold()) {
+            requestFlush();
+        }
+    }
+
+    // Массовая операция: изменения только копятся в очереди и сохраняются одним проходом в endBatch
+    public void beginBatch() {
+        batchDepth.incrementAndGet();
+    }
+
+    public void endBatch() {
+        if (batchDepth.decrementAndGet() == 0) {
+            requestFlush();
+        }
+    }
+
+    private void requestFlush() {
+        if (!flushQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        } catch (RejectedExecutionException e) {
+            flushQueued.set(false);
+        }
+    }
+
+    private void tick() {
+        if (dirty.isEmpty() || batchDepth.get() > 0) {
+            return;
+        }
+
+        long intervalMillis = plugin.getConfigManager().getStorageFlushIntervalSeconds() * 1000L;
+        if (System.currentTimeMillis() - lastFlushAt >= intervalMillis) {
+            flush();
+        }
+    }
+
+    // Вызывается только из потока executor, поэтому записи не пересекаются
+    private void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        // Забираем пачку до чтения данных: изменения, пришедшие во время записи,
+        // снова попадут в очередь и сохранятся следующим проходом
+        List<UUID> batch = new ArrayList<>(dirty.size());
+        Iterator<UUID> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = sizeManager.writeEntries(batch);
+        } catch (Exception e) {
+            plugin.getLogger().severe("Ошибка фонового сохранения данных игроков: " + e.getMessage());
+            success = false;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        lastFlushAt = System.currentTimeMillis();
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+        totalFlushNanos.addAndGet(elapsed);
+        flushCount.incrementAndGet();
+
+        if (success) {
+            flushedEntries.addAndGet(batch.size());
+        } else {
+            // Возвращаем записи в очередь, попробуем в следующий раз
+            failedFlushes.incrementAndGet();
+            dirty.addAll(batch);
+        }
+    }
+
+    // Финальное сохранение при выключении. Ждет не дольше storage.shutdown-timeout-ms
+    public void shutdown() {
+        long timeoutMillis = plugin.getConfigManager().getStorageShutdownTimeoutMs();
+        int pending = dirty.size();
+
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            // Уже остановлен
+        }
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                plugin.getLogger().severe("Сохранение данных игроков не завершилось за " + timeoutMillis
+                        + " мс! Не сохранено записей: " + dirty.size());
+                executor.shutdownNow();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+
+        if (!dirty.isEmpty()) {
+            plugin.getLogger().severe("Не удалось сохранить записей игроков: " + dirty.size());
+        } else if (pending > 0) {
+            plugin.getLogger().info("Финальное сохранение завершено: " + pending + " записей");
+        }
+    }
+
+    // Getters для метрик
+    public int getQueueDepth() {
+        return dirty.size();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getFlushedEntries() {
+        return flushedEntries.get();
+    }
+
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushNanos / 1_000_000.0;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos / 1_000_000.0;
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushCount.get();
+        return count == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / count;
+    }
+
+    public long getLastFlushAt() {
+        return lastFlushAt;
+    }
+}
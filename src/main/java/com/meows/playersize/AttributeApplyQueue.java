@@ -0,0 +1,142 @@
+package com.meows.playersize;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Очередь применения размера и здоровья игрокам.
+// Вместо отдельной задачи планировщика на каждый вход, респавн или перезагрузку
+// одна повторяющаяся задача раз в тик применяет не больше performance.apply-per-tick игроков.
+// Повторный запрос для того же игрока заменяет предыдущий.
+// Размер и здоровье определяются в момент применения по профилю мира, в котором игрок находится
+// (world-profiles), поэтому применяется всегда актуальное значение.
+// Итоговый размер учитывает модификаторы (SizeModifierStack): сколько бы их ни было,
+// атрибуты записываются один раз и только если итоговое значение изменилось.
+// Все методы вызываются из основного потока.
+public class AttributeApplyQueue {
+
+    private final PlayerSizePlugin plugin;
+    private final PlayerSizeManager sizeManager;
+    // Порядок добавления сохраняется: кто раньше попал в очередь, тот раньше применяется
+    private final Map<UUID, PendingApply> pending = new LinkedHashMap<>();
+    private long currentTick;
+
+    // Метрики для /playersize stats
+    private long requested;
+    private long coalesced;
+    private long applied;
+    private long deferred;
+    private int maxDepth;
+
+    public AttributeApplyQueue(PlayerSizePlugin plugin, PlayerSizeManager sizeManager) {
+        this.plugin = plugin;
+        this.sizeManager = sizeManager;
+    }
+
+    public void start() {
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }.runTaskTimer(plugin, 1L, 1L);
+    }
+
+    // delayTicks - через сколько тиков можно применять (например, после респавна)
+    public void enqueue(UUID uuid, int delayTicks) {
+        requested++;
+        long readyAt = currentTick + delayTicks;
+
+        PendingApply existing = pending.get(uuid);
+        if (existing != null) {
+            // Задержку не сокращаем
+            existing.readyAt = Math.max(existing.readyAt, readyAt);
+            coalesced++;
+            return;
+        }
+
+        pending.put(uuid, new PendingApply(readyAt));
+        if (pending.size() > maxDepth) {
+            maxDepth = pending.size();
+        }
+    }
+
+    private void drain() {
+        currentTick++;
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
+        int limit = config.applyPerTick();
+        int appliedThisTick = 0;
+
+        Iterator<Map.Entry<UUID, PendingApply>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, PendingApply> entry = iterator.next();
+            PendingApply request = entry.getValue();
+            if (request.readyAt > currentTick) {
+                continue;
+            }
+            if (appliedThisTick >= limit) {
+                // Лимит тика исчерпан - оставшиеся записи применятся в следующих тиках.
+                // Остаток очереди учитывается одним числом, без обхода каждой записи
+                deferred += pending.size();
+                break;
+            }
+
+            iterator.remove();
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null || !player.isOnline()) {
+                continue;
+            }
+            // Профиль мира - один поиск в готовой таблице снимка, иначе тир игрока из кэша
+            SizeProfile profile = config.profileFor(player.getWorld().getName(),
+                    sizeManager.getTierProfile(entry.getKey(), config));
+            // Основа и модификаторы - пересчитываются только изменившиеся слои
+            double size = sizeManager.resolveSize(player, profile);
+            sizeManager.applySize(player, size);
+            sizeManager.applyHealth(player, size, profile);
+            applied++;
+            appliedThisTick++;
+        }
+    }
+
+    // Getters для метрик
+    public int getQueueDepth() {
+        return pending.size();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getRequested() {
+        return requested;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public long getDeferred() {
+        return deferred;
+    }
+
+    private static final class PendingApply {
+        long readyAt;
+
+        PendingApply(long readyAt) {
+            this.readyAt = readyAt;
+        }
+    }
+}
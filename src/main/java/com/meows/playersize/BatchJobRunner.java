@@ -0,0 +1,112 @@
+package com.meows.playersize;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Выполнение массовых операций по частям: каждый тик обрабатывается столько записей,
+// сколько помещается в performance.batch-tick-budget-ms, поэтому сервер не зависает.
+// Сохранение на диск откладывается до конца операции и выполняется одним проходом.
+// Все методы вызываются из основного потока.
+public class BatchJobRunner {
+
+    private final PlayerSizePlugin plugin;
+    private final Set<String> running = new HashSet<>();
+
+    public BatchJobRunner(PlayerSizePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public boolean isRunning(String name) {
+        return running.contains(name);
+    }
+
+    // Запускает операцию name над items. Возвращает false, если операция с таким именем уже выполняется.
+    // reporter получает сообщения о ходе выполнения, onComplete вызывается после обработки всех записей
+    public <T> boolean submit(String name, CommandSender reporter, List<T> items, Consumer<T> action,
+            Runnable onComplete) {
+        if (!running.add(name)) {
+            return false;
+        }
+        if (items.isEmpty()) {
+            running.remove(name);
+            onComplete.run();
+            return true;
+        }
+
+        plugin.getPlayerSizeManager().getSaveManager().beginBatch();
+        new Job<>(name, reporter, items, action, onComplete).runTaskTimer(plugin, 1L, 1L);
+        return true;
+    }
+
+    private final class Job<T> extends BukkitRunnable {
+        private final String name;
+        private final CommandSender reporter;
+        private final List<T> items;
+        private final Consumer<T> action;
+        private final Runnable onComplete;
+
+        private int index;
+        private int ticks;
+        private int failures;
+        private long busyNanos;
+        private long lastReportAt = System.currentTimeMillis();
+
+        Job(String name, CommandSender reporter, List<T> items, Consumer<T> action, Runnable onComplete) {
+            this.name = name;
+            this.reporter = reporter;
+            this.items = items;
+            this.action = action;
+            this.onComplete = onComplete;
+        }
+
+        @Override
+        public void run() {
+            ConfigManager config = plugin.getConfigManager();
+            long start = System.nanoTime();
+            long deadline = start + config.getBatchTickBudgetMs() * 1_000_000L;
+
+            // Хотя бы одна запись за тик, даже если бюджет очень маленький
+            do {
+                try {
+                    action.accept(items.get(index));
+                } catch (Exception e) {
+                    failures++;
+                    plugin.getLogger().warning("Ошибка в массовой операции " + name + ": " + e.getMessage());
+                }
+                index++;
+            } while (index < items.size() && System.nanoTime() < deadline);
+
+            busyNanos += System.nanoTime() - start;
+            ticks++;
+
+            if (index >= items.size()) {
+                finish();
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastReportAt >= config.getBatchProgressIntervalSeconds() * 1000L) {
+                lastReportAt = now;
+                reporter.sendMessage("§7[PlayerSize] " + name + ": §e" + index + "§7/§e" + items.size() + " §7("
+                        + (index * 100L / items.size()) + "%)");
+            }
+        }
+
+        private void finish() {
+            cancel();
+            running.remove(name);
+            // Одно сохранение всех изменений операции
+            plugin.getPlayerSizeManager().getSaveManager().endBatch();
+
+            plugin.getLogger().info("Массовая операция " + name + " завершена: " + items.size() + " записей за "
+                    + ticks + " тиков (" + String.format("%.1f", busyNanos / 1_000_000.0) + " мс работы"
+                    + (failures > 0 ? ", ошибок: " + failures : "") + ")");
+            onComplete.run();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.meows.playersize;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Что изменилось между двумя снимками конфига.
+// По нему перезагрузка пересобирает только затронутые части плагина
+// и применяет размер и здоровье только тем игрокам, у которых результат стал другим.
+public class ConfigDelta {
+
+    private final boolean sizesChanged;
+    private final boolean healthChanged;
+    private final boolean potionItemChanged;
+    private final boolean recipeChanged;
+    private final boolean tiersChanged;
+
+    private ConfigDelta(boolean sizesChanged, boolean healthChanged, boolean potionItemChanged,
+            boolean recipeChanged, boolean tiersChanged) {
+        this.sizesChanged = sizesChanged;
+        this.healthChanged = healthChanged;
+        this.potionItemChanged = potionItemChanged;
+        this.recipeChanged = recipeChanged;
+        this.tiersChanged = tiersChanged;
+    }
+
+    public static ConfigDelta between(ConfigSnapshot previous, ConfigSnapshot current) {
+        // Общие настройки и каждый мир из профилей (и старых, и новых)
+        boolean sizes = !previous.globalProfile().sameSizes(current.globalProfile());
+        boolean health = !previous.globalProfile().sameHealth(current.globalProfile());
+        Set<String> worlds = new HashSet<>(previous.worldProfiles().keySet());
+        worlds.addAll(current.worldProfiles().keySet());
+        for (String world : worlds) {
+            SizeProfile before = previous.profileFor(world);
+            SizeProfile after = current.profileFor(world);
+            sizes |= !before.sameSizes(after);
+            health |= !before.sameHealth(after);
+        }
+
+        boolean potionItem = !Objects.equals(previous.potionName(), current.potionName())
+                || !previous.potionLore().equals(current.potionLore())
+                || previous.potionColorRed() != current.potionColorRed()
+                || previous.potionColorGreen() != current.potionColorGreen()
+                || previous.potionColorBlue() != current.potionColorBlue();
+
+        // Нативный рецепт хранит готовое зелье как результат, поэтому зависит и от вида зелья
+        boolean recipe = !previous.potionRecipe().equals(current.potionRecipe())
+                || previous.potionEnabled() != current.potionEnabled()
+                || previous.potionNativeRecipe() != current.potionNativeRecipe()
+                || (potionItem && current.potionNativeRecipe());
+
+        // Права, порядок или настройки тиров (тиры наследуют общие sizes и health)
+        boolean tiers = !previous.permissionTiers().equals(current.permissionTiers());
+
+        return new ConfigDelta(sizes, health, potionItem, recipe, tiers);
+    }
+
+    // Изменились min-size, max-size, default-size, use-random-size или distribution (общие или в профиле мира)
+    public boolean isSizesChanged() {
+        return sizesChanged;
+    }
+
+    // Изменились настройки здоровья маленьких игроков (общие или в профиле мира)
+    public boolean isHealthChanged() {
+        return healthChanged;
+    }
+
+    // Изменились название, описание или цвет зелья
+    public boolean isPotionItemChanged() {
+        return potionItemChanged;
+    }
+
+    // Рецепт нужно собрать и зарегистрировать заново
+    public boolean isRecipeChanged() {
+        return recipeChanged;
+    }
+
+    // Изменились тиры прав: у онлайн игроков тир нужно определить заново
+    public boolean isTiersChanged() {
+        return tiersChanged;
+    }
+
+    // Список измененных разделов для логов и сообщений
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        if (sizesChanged) {
+            parts.add("размеры");
+        }
+        if (healthChanged) {
+            parts.add("здоровье");
+        }
+        if (potionItemChanged) {
+            parts.add("зелье");
+        }
+        if (recipeChanged) {
+            parts.add("рецепт");
+        }
+        if (tiersChanged) {
+            parts.add("тиры");
+        }
+        return parts.isEmpty() ? "ничего из размеров, здоровья и зелья" : String.join(", ", parts);
+    }
+}
@@ -1,38 +1,23 @@
 package com.meows.playersize;
 
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ConfigManager {
 
     private final JavaPlugin plugin;
-    private FileConfiguration config;
-
-    // Настройки размеров
-    private double minSize = 0.75;
-    private double maxSize = 0.9;
-    private double defaultSize = 0.83;
-    private boolean useRandomSize = true;
-
-    // Настройки здоровья
-    private boolean reduceHealthForSmallPlayers = true;
-    private double smallSizeThreshold = 0.666;
-    private int healthReduction = 2;
-
-    // Настройки зелья
-    private boolean potionEnabled = true;
-    private boolean potionApplyOnMobs = true;
-    private boolean potionDebugCrafting = false;
-    private List<String> potionRecipe;
-    private String potionName = "§6§lЗелье Изменения Роста";
-    private List<String> potionLore;
-    private int potionColorRed = 255;
-    private int potionColorGreen = 165;
-    private int potionColorBlue = 0;
+    // Текущий снимок настроек. Подменяется целиком при перезагрузке
+    private volatile ConfigSnapshot snapshot;
 
     public ConfigManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -40,30 +25,57 @@ public class ConfigManager {
     }
 
     public void loadConfig() {
-        File configFile = new File(plugin.getDataFolder(), "config.yml");
+        File configFile = getConfigFile();
         if (!configFile.exists()) {
             plugin.getDataFolder().mkdirs();
             plugin.saveResource("config.yml", false);
         }
 
-        config = YamlConfiguration.loadConfiguration(configFile);
+        try {
+            snapshot = parse(configFile);
+        } catch (IllegalStateException e) {
+            if (snapshot != null) {
+                // Перезагрузка: остаются прежние настройки, ошибку покажет вызывающий код
+                throw e;
+            }
+            plugin.getLogger().severe(e.getMessage() + ". Используются значения по умолчанию.");
+            snapshot = parse(new YamlConfiguration());
+        }
+    }
+
+    // Подменяет текущий снимок (например, снимком, прочитанным в фоне при автоперезагрузке)
+    public void publish(ConfigSnapshot next) {
+        snapshot = next;
+    }
+
+    public File getConfigFile() {
+        return new File(plugin.getDataFolder(), "config.yml");
+    }
 
-        // Загружаем настройки размеров
-        minSize = config.getDouble("sizes.min-size", 0.75);
-        maxSize = config.getDouble("sizes.max-size", 0.9);
-        defaultSize = config.getDouble("sizes.default-size", 0.83);
-        useRandomSize = config.getBoolean("sizes.use-random-size", true);
+    // Чтение и проверка config.yml без изменения текущих настроек. Можно вызывать из любого потока.
+    // Если файл не читается или YAML поврежден (например, сохранен не до конца), бросает IllegalStateException
+    public ConfigSnapshot parse(File configFile) {
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(configFile);
+        } catch (IOException | InvalidConfigurationException e) {
+            throw new IllegalStateException("Не удалось прочитать config.yml: " + e.getMessage(), e);
+        }
+        return parse(config);
+    }
 
-        // Загружаем настройки здоровья
-        reduceHealthForSmallPlayers = config.getBoolean("health.reduce-health-for-small-players", true);
-        smallSizeThreshold = config.getDouble("health.small-size-threshold", 0.666);
-        healthReduction = config.getInt("health.health-reduction", 2);
+    private ConfigSnapshot parse(FileConfiguration config) {
+        // Загружаем настройки размеров и здоровья (общие и профили миров)
+        SizeProfile globalProfile = parseProfile(config, "", "global", SizeProfile.DEFAULTS, false);
+        Map<String, SizeProfile> worldProfiles = parseWorldProfiles(config, globalProfile);
+        List<PermissionTier> permissionTiers = parsePermissionTiers(config, globalProfile);
 
         // Загружаем настройки зелья
-        potionEnabled = config.getBoolean("potion.enabled", true);
-        potionApplyOnMobs = config.getBoolean("potion.apply-on-mobs", true);
-        potionDebugCrafting = config.getBoolean("potion.debug-crafting", false);
-        potionRecipe = config.getStringList("potion.recipe");
+        boolean potionEnabled = config.getBoolean("potion.enabled", true);
+        boolean potionApplyOnMobs = config.getBoolean("potion.apply-on-mobs", true);
+        boolean potionDebugCrafting = config.getBoolean("potion.debug-crafting", false);
+        boolean potionNativeRecipe = config.getBoolean("potion.native-recipe", false);
+        List<String> potionRecipe = config.getStringList("potion.recipe");
         if (potionRecipe.isEmpty()) {
             // Дефолтный рецепт
             potionRecipe = List.of(
@@ -71,8 +83,8 @@ public class ConfigManager {
                     "ENDER_EYE", "DRAGON_BREATH", "PHANTOM_MEMBRANE",
                     "SPIDER_EYE", "DIAMOND", "ENCHANTED_GOLDEN_APPLE");
         }
-        potionName = config.getString("potion.name", "§6§lЗелье Изменения Роста");
-        potionLore = config.getStringList("potion.lore");
+        String potionName = config.getString("potion.name", "§6§lЗелье Изменения Роста");
+        List<String> potionLore = config.getStringList("potion.lore");
         if (potionLore.isEmpty()) {
             potionLore = List.of(
                     "§7Используйте это зелье, чтобы",
@@ -80,109 +92,396 @@ public class ConfigManager {
                     "",
                     "§eВаш размер будет перегенерирован");
         }
-        potionColorRed = config.getInt("potion.color.red", 255);
-        potionColorGreen = config.getInt("potion.color.green", 165);
-        potionColorBlue = config.getInt("potion.color.blue", 0);
+        int potionColorRed = config.getInt("potion.color.red", 255);
+        int potionColorGreen = config.getInt("potion.color.green", 165);
+        int potionColorBlue = config.getInt("potion.color.blue", 0);
+        int potionDurationSeconds = config.getInt("potion.duration-seconds", 0);
+
+        // Загружаем настройки сохранения
+        String storageType = config.getString("storage.type", "json").toLowerCase();
+        int storageJournalCompactThresholdKb = config.getInt("storage.journal-compact-threshold-kb", 1024);
+        int storageFlushIntervalSeconds = config.getInt("storage.flush-interval-seconds", 5);
+        int storageFlushThreshold = config.getInt("storage.flush-threshold", 200);
+        long storageShutdownTimeoutMs = config.getLong("storage.shutdown-timeout-ms", 5000);
+
+        // Загружаем настройки производительности
+        int batchTickBudgetMs = config.getInt("performance.batch-tick-budget-ms", 5);
+        int batchProgressIntervalSeconds = config.getInt("performance.batch-progress-interval-seconds", 5);
+        int applyPerTick = config.getInt("performance.apply-per-tick", 20);
+        int particleViewRadius = config.getInt("performance.particle-view-radius", 32);
+        int particleBudgetPerTick = config.getInt("performance.particle-budget-per-tick", 2000);
+
+        // Загружаем настройки автоперезагрузки
+        boolean autoReloadEnabled = config.getBoolean("auto-reload.enabled", false);
+        int autoReloadDebounceMs = config.getInt("auto-reload.debounce-ms", 1000);
 
         // Валидация
-        validateConfig();
-    }
+        if (potionDurationSeconds < 0) {
+            plugin.getLogger().warning("potion.duration-seconds не может быть отрицательным! Устанавливаю 0.");
+            potionDurationSeconds = 0;
+        }
+
+        if (storageFlushIntervalSeconds < 1) {
+            plugin.getLogger().warning("storage.flush-interval-seconds должен быть не меньше 1! Устанавливаю 1.");
+            storageFlushIntervalSeconds = 1;
+        }
+
+        if (storageFlushThreshold < 1) {
+            plugin.getLogger().warning("storage.flush-threshold должен быть не меньше 1! Устанавливаю 1.");
+            storageFlushThreshold = 1;
+        }
+
+        if (storageJournalCompactThresholdKb < 16) {
+            plugin.getLogger().warning("storage.journal-compact-threshold-kb слишком маленький! Устанавливаю 16.");
+            storageJournalCompactThresholdKb = 16;
+        }
+
+        if (storageShutdownTimeoutMs < 100) {
+            plugin.getLogger().warning("storage.shutdown-timeout-ms слишком маленький! Устанавливаю 100.");
+            storageShutdownTimeoutMs = 100;
+        }
+
+        if (batchTickBudgetMs < 1 || batchTickBudgetMs > 40) {
+            plugin.getLogger().warning("performance.batch-tick-budget-ms должен быть от 1 до 40! Устанавливаю 5.");
+            batchTickBudgetMs = 5;
+        }
 
-    private void validateConfig() {
-        if (minSize < 0.1 || maxSize < 0.1 || defaultSize < 0.1) {
-            plugin.getLogger().warning(
-                    "Некорректные значения размера в конфиге (минимум 0.1)! Используются значения по умолчанию.");
-            minSize = 0.75;
-            maxSize = 0.9;
-            defaultSize = 0.83;
+        if (batchProgressIntervalSeconds < 1) {
+            plugin.getLogger()
+                    .warning("performance.batch-progress-interval-seconds должен быть не меньше 1! Устанавливаю 1.");
+            batchProgressIntervalSeconds = 1;
         }
 
-        if (minSize > 5.0 || maxSize > 5.0 || defaultSize > 5.0) {
-            plugin.getLogger().warning(
-                    "Некорректные значения размера в конфиге (максимум 5.0)! Используются значения по умолчанию.");
-            minSize = 0.75;
-            maxSize = 0.9;
-            defaultSize = 0.83;
+        if (applyPerTick < 1) {
+            plugin.getLogger().warning("performance.apply-per-tick должен быть не меньше 1! Устанавливаю 1.");
+            applyPerTick = 1;
         }
 
-        if (minSize > maxSize) {
-            plugin.getLogger().warning("min-size больше max-size! Меняю местами.");
-            double temp = minSize;
-            minSize = maxSize;
-            maxSize = temp;
+        if (particleViewRadius < 1 || particleViewRadius > 128) {
+            plugin.getLogger().warning("performance.particle-view-radius должен быть от 1 до 128! Устанавливаю 32.");
+            particleViewRadius = 32;
         }
 
-        if (defaultSize < minSize || defaultSize > maxSize) {
+        if (particleBudgetPerTick < 0) {
             plugin.getLogger()
-                    .warning("default-size находится вне диапазона min-size..max-size! Устанавливаю среднее значение.");
-            defaultSize = (minSize + maxSize) / 2.0;
+                    .warning("performance.particle-budget-per-tick не может быть отрицательным! Устанавливаю 0.");
+            particleBudgetPerTick = 0;
+        }
+
+        if (autoReloadDebounceMs < 100) {
+            plugin.getLogger().warning("auto-reload.debounce-ms слишком маленький! Устанавливаю 100.");
+            autoReloadDebounceMs = 100;
+        }
+
+        return new ConfigSnapshot(globalProfile, worldProfiles, permissionTiers,
+                potionEnabled, potionApplyOnMobs, potionDebugCrafting, potionNativeRecipe, potionRecipe, potionName,
+                potionLore, potionColorRed, potionColorGreen, potionColorBlue, potionDurationSeconds,
+                storageType, storageJournalCompactThresholdKb, storageFlushIntervalSeconds, storageFlushThreshold,
+                storageShutdownTimeoutMs,
+                batchTickBudgetMs, batchProgressIntervalSeconds, applyPerTick, particleViewRadius,
+                particleBudgetPerTick,
+                autoReloadEnabled, autoReloadDebounceMs);
+    }
+
+    // Разделы sizes и health по пути prefix ("" - общие настройки, "world-profiles.<имя>." - профиль мира,
+    // "permission-tiers.<имя>." - тир). Отсутствующие значения берутся из parent. Если в профиле нет раздела sizes,
+    // размеры (вместе с распределением) полностью совпадают с общими
+    private SizeProfile parseProfile(FileConfiguration config, String prefix, String name, SizeProfile parent,
+            boolean clampOverrides) {
+        boolean global = prefix.isEmpty();
+        String where = global ? "" : " (" + prefix.substring(0, prefix.length() - 1) + ")";
+
+        double minSize = parent.minSize();
+        double maxSize = parent.maxSize();
+        double defaultSize = parent.defaultSize();
+        boolean useRandomSize = parent.useRandomSize();
+        SizeDistribution sizeDistribution = parent.sizeDistribution();
+
+        if (global || config.isConfigurationSection(prefix + "sizes")) {
+            minSize = config.getDouble(prefix + "sizes.min-size", parent.minSize());
+            maxSize = config.getDouble(prefix + "sizes.max-size", parent.maxSize());
+            defaultSize = config.getDouble(prefix + "sizes.default-size", parent.defaultSize());
+            useRandomSize = config.getBoolean(prefix + "sizes.use-random-size", parent.useRandomSize());
+
+            // Валидация
+            if (minSize < 0.1 || maxSize < 0.1 || defaultSize < 0.1) {
+                plugin.getLogger().warning("Некорректные значения размера в конфиге" + where
+                        + " (минимум 0.1)! Используются значения по умолчанию.");
+                minSize = parent.minSize();
+                maxSize = parent.maxSize();
+                defaultSize = parent.defaultSize();
+            }
+
+            if (minSize > 5.0 || maxSize > 5.0 || defaultSize > 5.0) {
+                plugin.getLogger().warning("Некорректные значения размера в конфиге" + where
+                        + " (максимум 5.0)! Используются значения по умолчанию.");
+                minSize = parent.minSize();
+                maxSize = parent.maxSize();
+                defaultSize = parent.defaultSize();
+            }
+
+            if (minSize > maxSize) {
+                plugin.getLogger().warning("min-size больше max-size" + where + "! Меняю местами.");
+                double temp = minSize;
+                minSize = maxSize;
+                maxSize = temp;
+            }
+
+            if (defaultSize < minSize || defaultSize > maxSize) {
+                plugin.getLogger().warning("default-size находится вне диапазона min-size..max-size" + where
+                        + "! Устанавливаю среднее значение.");
+                defaultSize = (minSize + maxSize) / 2.0;
+            }
+
+            // Распределение строится уже по проверенным min-size и max-size
+            sizeDistribution = compileSizeDistribution(config, prefix + "sizes.distribution", minSize, maxSize);
+        }
+
+        boolean reduceHealthForSmallPlayers = config.getBoolean(prefix + "health.reduce-health-for-small-players",
+                parent.reduceHealthForSmallPlayers());
+        double smallSizeThreshold = config.getDouble(prefix + "health.small-size-threshold",
+                parent.smallSizeThreshold());
+        int healthReduction = config.getInt(prefix + "health.health-reduction", parent.healthReduction());
+
+        return new SizeProfile(name, clampOverrides, minSize, maxSize, defaultSize, useRandomSize, sizeDistribution,
+                reduceHealthForSmallPlayers, smallSizeThreshold, healthReduction);
+    }
+
+    // Таблица мир -> профиль из раздела world-profiles. Миры без профиля используют общие настройки
+    private Map<String, SizeProfile> parseWorldProfiles(FileConfiguration config, SizeProfile globalProfile) {
+        Map<String, SizeProfile> worldProfiles = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("world-profiles");
+        if (section == null) {
+            return worldProfiles;
+        }
+
+        for (String name : section.getKeys(false)) {
+            String prefix = "world-profiles." + name + ".";
+            List<String> worlds = config.getStringList(prefix + "worlds");
+            if (worlds.isEmpty()) {
+                plugin.getLogger().warning("В профиле world-profiles." + name + " не указан ни один мир (worlds)!"
+                        + " Профиль не используется.");
+                continue;
+            }
+
+            SizeProfile profile = parseProfile(config, prefix, name, globalProfile, true);
+            for (String world : worlds) {
+                SizeProfile existing = worldProfiles.putIfAbsent(world, profile);
+                if (existing != null) {
+                    plugin.getLogger().warning("Мир " + world + " указан в профилях " + existing.name() + " и "
+                            + name + "! Используется " + existing.name() + ".");
+                }
+            }
+        }
+        return worldProfiles;
+    }
+
+    // Тиры из раздела permission-tiers в порядке приоритета: игрок получает первый тир, право которого у него есть
+    private List<PermissionTier> parsePermissionTiers(FileConfiguration config, SizeProfile globalProfile) {
+        List<PermissionTier> tiers = new ArrayList<>();
+        ConfigurationSection section = config.getConfigurationSection("permission-tiers");
+        if (section == null) {
+            return tiers;
         }
+
+        for (String name : section.getKeys(false)) {
+            String prefix = "permission-tiers." + name + ".";
+            String permission = config.getString(prefix + "permission", "playersize.tier." + name);
+            SizeProfile profile = parseProfile(config, prefix, name, globalProfile, false);
+            tiers.add(new PermissionTier(permission, profile));
+        }
+        return tiers;
+    }
+
+    private SizeDistribution compileSizeDistribution(FileConfiguration config, String path, double minSize,
+            double maxSize) {
+        String type = config.getString(path + ".type", "uniform").toLowerCase();
+        switch (type) {
+            case "uniform":
+                return SizeDistribution.uniform(minSize, maxSize);
+            case "normal": {
+                double mean = config.getDouble(path + ".normal.mean", (minSize + maxSize) / 2.0);
+                double stdDev = config.getDouble(path + ".normal.std-dev", (maxSize - minSize) / 4.0);
+                if (!(stdDev > 0)) {
+                    plugin.getLogger().warning(
+                            path + ".normal.std-dev должен быть больше 0! Используется равномерное распределение.");
+                    return SizeDistribution.uniform(minSize, maxSize);
+                }
+                return SizeDistribution.truncatedNormal(minSize, maxSize, mean, stdDev);
+            }
+            case "buckets": {
+                List<SizeDistribution.Bucket> buckets = new ArrayList<>();
+                for (Map<?, ?> entry : config.getMapList(path + ".buckets")) {
+                    SizeDistribution.Bucket bucket = parseBucket(entry, path, minSize, maxSize);
+                    if (bucket != null) {
+                        buckets.add(bucket);
+                    }
+                }
+                if (buckets.isEmpty()) {
+                    plugin.getLogger().warning(
+                            path + ".buckets пуст или некорректен! Используется равномерное распределение.");
+                    return SizeDistribution.uniform(minSize, maxSize);
+                }
+                return SizeDistribution.buckets(buckets);
+            }
+            default:
+                plugin.getLogger().warning("Неизвестный " + path + ".type: " + type
+                        + ". Используется равномерное распределение.");
+                return SizeDistribution.uniform(minSize, maxSize);
+        }
+    }
+
+    // Корзина {min, max, weight}. Границы обрезаются до min-size..max-size, некорректная корзина пропускается
+    private SizeDistribution.Bucket parseBucket(Map<?, ?> entry, String path, double minSize, double maxSize) {
+        if (!(entry.get("min") instanceof Number) || !(entry.get("max") instanceof Number)
+                || !(entry.get("weight") instanceof Number)) {
+            plugin.getLogger().warning("Корзина в " + path + ".buckets должна содержать min, max и weight: "
+                    + entry);
+            return null;
+        }
+        double min = Math.max(minSize, ((Number) entry.get("min")).doubleValue());
+        double max = Math.min(maxSize, ((Number) entry.get("max")).doubleValue());
+        double weight = ((Number) entry.get("weight")).doubleValue();
+        if (min > max || !(weight > 0)) {
+            plugin.getLogger().warning("Некорректная корзина в " + path + ".buckets (вне min-size..max-size"
+                    + " или вес не больше 0): " + entry);
+            return null;
+        }
+        return new SizeDistribution.Bucket(min, max, weight);
+    }
+
+    // Текущий снимок целиком: если нужно несколько значений, лучше прочитать снимок один раз
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
     }
 
     // Getters для размеров
     public double getMinSize() {
-        return minSize;
+        return snapshot.globalProfile().minSize();
     }
 
     public double getMaxSize() {
-        return maxSize;
+        return snapshot.globalProfile().maxSize();
     }
 
     public double getDefaultSize() {
-        return defaultSize;
+        return snapshot.globalProfile().defaultSize();
     }
 
     public boolean isUseRandomSize() {
-        return useRandomSize;
+        return snapshot.globalProfile().useRandomSize();
+    }
+
+    public SizeDistribution getSizeDistribution() {
+        return snapshot.globalProfile().sizeDistribution();
     }
 
     // Getters для здоровья
     public boolean isReduceHealthForSmallPlayers() {
-        return reduceHealthForSmallPlayers;
+        return snapshot.globalProfile().reduceHealthForSmallPlayers();
     }
 
     public double getSmallSizeThreshold() {
-        return smallSizeThreshold;
+        return snapshot.globalProfile().smallSizeThreshold();
     }
 
     public int getHealthReduction() {
-        return healthReduction;
+        return snapshot.globalProfile().healthReduction();
     }
 
     // Getters для зелья
     public boolean isPotionEnabled() {
-        return potionEnabled;
+        return snapshot.potionEnabled();
     }
 
     public boolean isPotionApplyOnMobs() {
-        return potionApplyOnMobs;
+        return snapshot.potionApplyOnMobs();
     }
 
     public boolean isPotionDebugCrafting() {
-        return potionDebugCrafting;
+        return snapshot.potionDebugCrafting();
+    }
+
+    public boolean isPotionNativeRecipe() {
+        return snapshot.potionNativeRecipe();
     }
 
     public List<String> getPotionRecipe() {
-        return potionRecipe;
+        return snapshot.potionRecipe();
     }
 
     public String getPotionName() {
-        return potionName;
+        return snapshot.potionName();
     }
 
     public List<String> getPotionLore() {
-        return potionLore;
+        return snapshot.potionLore();
     }
 
     public int getPotionColorRed() {
-        return potionColorRed;
+        return snapshot.potionColorRed();
     }
 
     public int getPotionColorGreen() {
-        return potionColorGreen;
+        return snapshot.potionColorGreen();
     }
 
     public int getPotionColorBlue() {
-        return potionColorBlue;
+        return snapshot.potionColorBlue();
+    }
+
+    public int getPotionDurationSeconds() {
+        return snapshot.potionDurationSeconds();
+    }
+
+    // Getters для сохранения
+    public String getStorageType() {
+        return snapshot.storageType();
+    }
+
+    public int getStorageJournalCompactThresholdKb() {
+        return snapshot.storageJournalCompactThresholdKb();
+    }
+
+    public int getStorageFlushIntervalSeconds() {
+        return snapshot.storageFlushIntervalSeconds();
+    }
+
+    public int getStorageFlushThreshold() {
+        return snapshot.storageFlushThreshold();
+    }
+
+    public long getStorageShutdownTimeoutMs() {
+        return snapshot.storageShutdownTimeoutMs();
+    }
+
+
+    // Getters для производительности
+    public int getBatchTickBudgetMs() {
+        return snapshot.batchTickBudgetMs();
+    }
+
+    public int getBatchProgressIntervalSeconds() {
+        return snapshot.batchProgressIntervalSeconds();
+    }
+
+    public int getApplyPerTick() {
+        return snapshot.applyPerTick();
+    }
+
+    public int getParticleViewRadius() {
+        return snapshot.particleViewRadius();
+    }
+
+    public int getParticleBudgetPerTick() {
+        return snapshot.particleBudgetPerTick();
+    }
+
+    public boolean isAutoReloadEnabled() {
+        return snapshot.autoReloadEnabled();
+    }
+
+    public int getAutoReloadDebounceMs() {
+        return snapshot.autoReloadDebounceMs();
     }
 }
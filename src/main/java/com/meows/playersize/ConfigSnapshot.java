@@ -0,0 +1,67 @@
+package com.meows.playersize;
+
+import java.util.List;
+import java.util.Map;
+
+// Проверенные значения config.yml на момент загрузки.
+// Снимок неизменяемый: ConfigManager при перезагрузке подменяет его целиком одной ссылкой,
+// поэтому код, который прочитал снимок один раз, видит согласованные значения из одной версии конфига.
+// Читать можно из любого потока.
+public record ConfigSnapshot(
+        // Общие настройки размеров и здоровья (разделы sizes и health)
+        SizeProfile globalProfile,
+        // Профили миров: имя мира -> профиль (world-profiles)
+        Map<String, SizeProfile> worldProfiles,
+        // Тиры прав в порядке приоритета (permission-tiers)
+        List<PermissionTier> permissionTiers,
+
+        // Настройки зелья
+        boolean potionEnabled,
+        boolean potionApplyOnMobs,
+        boolean potionDebugCrafting,
+        boolean potionNativeRecipe,
+        List<String> potionRecipe,
+        String potionName,
+        List<String> potionLore,
+        int potionColorRed,
+        int potionColorGreen,
+        int potionColorBlue,
+        // Сколько секунд действует размер от зелья (0 - навсегда)
+        int potionDurationSeconds,
+
+        // Настройки сохранения данных
+        String storageType,
+        int storageJournalCompactThresholdKb,
+        int storageFlushIntervalSeconds,
+        int storageFlushThreshold,
+        long storageShutdownTimeoutMs,
+
+        // Настройки производительности
+        int batchTickBudgetMs,
+        int batchProgressIntervalSeconds,
+        int applyPerTick,
+        int particleViewRadius,
+        int particleBudgetPerTick,
+
+        // Автоматическая перезагрузка конфига
+        boolean autoReloadEnabled,
+        int autoReloadDebounceMs) {
+
+    public ConfigSnapshot {
+        worldProfiles = Map.copyOf(worldProfiles);
+        permissionTiers = List.copyOf(permissionTiers);
+        potionRecipe = List.copyOf(potionRecipe);
+        potionLore = List.copyOf(potionLore);
+    }
+
+    // Профиль мира: один поиск в готовой таблице
+    public SizeProfile profileFor(String worldName) {
+        return profileFor(worldName, globalProfile);
+    }
+
+    // Профиль мира или fallback (тир игрока), если у мира нет своего профиля
+    public SizeProfile profileFor(String worldName, SizeProfile fallback) {
+        SizeProfile profile = worldProfiles.get(worldName);
+        return profile != null ? profile : fallback;
+    }
+}
@@ -0,0 +1,154 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+// Автоматическая перезагрузка config.yml (auto-reload.enabled).
+// Фоновый поток следит за папкой плагина и ждет, пока файл перестанет меняться auto-reload.debounce-ms
+// (редакторы сохраняют файл в несколько записей). Файл читается и проверяется в этом же потоке,
+// а в основной поток попадает только готовый снимок: там он подменяется одной ссылкой.
+public class ConfigWatcher {
+
+    private final PlayerSizePlugin plugin;
+    private WatchService watchService;
+    private Thread thread;
+
+    public ConfigWatcher(PlayerSizePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Не удалось включить автоперезагрузку конфига: " + e.getMessage());
+            closeWatchService();
+            return;
+        }
+
+        WatchService service = watchService;
+        thread = new Thread(() -> watch(service), "PlayerSize-ConfigWatcher");
+        thread.setDaemon(true);
+        thread.start();
+        plugin.getLogger().info("Автоперезагрузка конфига включена");
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        // Закрытие WatchService будит поток, ожидающий событий
+        closeWatchService();
+        thread.interrupt();
+        thread = null;
+        plugin.getLogger().info("Автоперезагрузка конфига выключена");
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Поток все равно завершится
+            }
+            watchService = null;
+        }
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                boolean changed = pollConfigEvents(key);
+                if (!changed) {
+                    continue;
+                }
+
+                // Ждем тишины: каждое новое изменение config.yml откладывает перезагрузку.
+                // Записи плагина в ту же папку (player_sizes.*) ожидание не продлевают
+                long debounceNanos = TimeUnit.MILLISECONDS.toNanos(plugin.getConfigManager().getAutoReloadDebounceMs());
+                long deadline = System.nanoTime() + debounceNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    WatchKey next = service.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (pollConfigEvents(next)) {
+                        deadline = System.nanoTime() + debounceNanos;
+                    }
+                }
+
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Остановлено через stop()
+        }
+    }
+
+    // Забирает события ключа и сообщает, был ли среди них config.yml
+    private boolean pollConfigEvents(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+                continue;
+            }
+            Object context = event.context();
+            if (context instanceof Path && ((Path) context).getFileName().toString().equals("config.yml")) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reload() {
+        ConfigManager configManager = plugin.getConfigManager();
+        File configFile = configManager.getConfigFile();
+        if (!configFile.exists()) {
+            // Файл удален или еще не переименован редактором - оставляем текущие настройки
+            return;
+        }
+
+        ConfigSnapshot next;
+        try {
+            next = configManager.parse(configFile);
+        } catch (Exception e) {
+            plugin.getLogger().severe("Ошибка при автоперезагрузке конфигурации: " + e.getMessage()
+                    + ". Оставлены прежние настройки");
+            return;
+        }
+
+        if (!plugin.isEnabled()) {
+            return;
+        }
+        // Подмена снимка и применение настроек - только в основном потоке
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (!isRunning()) {
+                return;
+            }
+            ConfigSnapshot previous = configManager.getSnapshot();
+            configManager.publish(next);
+            plugin.onConfigReloaded(previous);
+            plugin.getLogger().info("Конфигурация перезагружена автоматически (изменен config.yml)");
+        });
+    }
+}
@@ -0,0 +1,257 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+// Журнальный формат: каждое изменение дописывается маленькой записью в player_sizes.journal,
+// а при росте журнала его содержимое сворачивается в снимок player_sizes.json.
+//
+// Формат записи: [int длина][payload][int crc32(payload)]
+// payload: [byte тип][long uuidMost][long uuidLeast][double размер или NaN][short длина ника][ник UTF-8]
+public class JournalPlayerStorage implements PlayerDataStorage {
+
+    public static final String JOURNAL_FILE = "player_sizes.journal";
+
+    private static final byte RECORD_ENTRY = 1;
+    private static final int MAX_NAME_BYTES = 64;
+    private static final int MAX_PAYLOAD = 1 + 8 + 8 + 8 + 2 + MAX_NAME_BYTES;
+
+    private final Logger logger;
+    // Размер журнала в байтах, после которого он сворачивается (читается при каждом сохранении)
+    private final LongSupplier compactThreshold;
+    private final JsonPlayerStorage snapshot;
+    private final File journalFile;
+    private FileChannel channel;
+
+    // Метрики (пишутся только из потока сохранения)
+    private volatile long journalBytes;
+    private volatile long appendedBytes;
+    private volatile long appendedRecords;
+    private volatile long compactions;
+
+    public JournalPlayerStorage(PlayerSizePlugin plugin) {
+        this(plugin.getDataFolder(), plugin.getLogger(),
+                () -> plugin.getConfigManager().getStorageJournalCompactThresholdKb() * 1024L);
+    }
+
+    // Без сервера: папка данных, логгер и порог сжатия (тесты и замеры)
+    JournalPlayerStorage(File dataFolder, Logger logger, LongSupplier compactThreshold) {
+        this.logger = logger;
+        this.compactThreshold = compactThreshold;
+        this.snapshot = new JsonPlayerStorage(dataFolder, logger, false);
+        this.journalFile = new File(dataFolder, JOURNAL_FILE);
+    }
+
+    @Override
+    public void load(Records records) {
+        // Сначала снимок, затем хвост журнала поверх него
+        snapshot.load(records);
+        // Переход с binary: player_sizes.dat новее снимка, переносим его в снимок до проигрывания журнала
+        snapshot.importBinary(records);
+
+        if (journalFile.exists()) {
+            int replayed = replay(logger, journalFile, records);
+            logger.info("Восстановлено записей из журнала: " + replayed);
+        }
+
+        try {
+            if (!journalFile.getParentFile().exists()) {
+                journalFile.getParentFile().mkdirs();
+            }
+            channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            journalBytes = channel.size();
+            channel.position(journalBytes);
+        } catch (IOException e) {
+            logger.severe("Не удалось открыть журнал данных игроков: " + e.getMessage());
+        }
+    }
+
+    // Проигрывает журнал поверх уже загруженных данных.
+    // Оборванная последняя запись (сервер упал во время записи) пропускается и отрезается.
+    static int replay(Logger logger, File file, Records records) {
+        int replayed = 0;
+        long validLength = 0;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            CRC32 crc = new CRC32();
+
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > MAX_PAYLOAD || buffer.remaining() < length + 4) {
+                    break;
+                }
+
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), length);
+                int payloadStart = buffer.position();
+                buffer.position(payloadStart + length);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    break;
+                }
+
+                buffer.position(payloadStart);
+                byte type = buffer.get();
+                UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+                double size = buffer.getDouble();
+                byte[] nameBytes = new byte[buffer.getShort()];
+                buffer.get(nameBytes);
+                buffer.getInt(); // crc
+
+                if (type == RECORD_ENTRY) {
+                    String name = nameBytes.length > 0 ? new String(nameBytes, StandardCharsets.UTF_8) : null;
+                    records.loadEntry(uuid, Double.isNaN(size) ? null : size, name);
+                    replayed++;
+                }
+                validLength = buffer.position();
+            }
+
+            if (validLength < buffer.capacity()) {
+                logger.warning("Журнал данных игроков поврежден в конце ("
+                        + (buffer.capacity() - validLength) + " байт), оборванная запись пропущена");
+                try (FileChannel truncate = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    truncate.truncate(validLength);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Ошибка при чтении журнала данных игроков: " + e.getMessage());
+        }
+
+        return replayed;
+    }
+
+    @Override
+    public boolean save(Records records, Collection<UUID> dirtyEntries) {
+        if (channel == null) {
+            // Журнал не открылся - сохраняем хотя бы полный снимок
+            return snapshot.save(records, dirtyEntries);
+        }
+
+        long startPosition = journalBytes;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(dirtyEntries.size() * (MAX_PAYLOAD + 8));
+            CRC32 crc = new CRC32();
+            int written = 0;
+
+            for (UUID uuid : dirtyEntries) {
+                Double size = records.getResidentSize(uuid);
+                String name = records.getResidentName(uuid);
+                byte[] nameBytes = encodeName(name);
+
+                int lengthPosition = buffer.position();
+                buffer.putInt(0);
+                int payloadStart = buffer.position();
+                buffer.put(RECORD_ENTRY);
+                buffer.putLong(uuid.getMostSignificantBits());
+                buffer.putLong(uuid.getLeastSignificantBits());
+                buffer.putDouble(size != null ? size : Double.NaN);
+                buffer.putShort((short) nameBytes.length);
+                buffer.put(nameBytes);
+                int length = buffer.position() - payloadStart;
+
+                crc.reset();
+                crc.update(buffer.array(), payloadStart, length);
+                buffer.putInt(lengthPosition, length);
+                buffer.putInt((int) crc.getValue());
+                written++;
+            }
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+
+            journalBytes = channel.position();
+            appendedBytes += journalBytes - startPosition;
+            appendedRecords += written;
+
+            if (journalBytes >= compactThreshold.getAsLong()) {
+                compact(records);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.severe("Ошибка при записи журнала данных игроков: " + e.getMessage());
+            // Убираем частично записанную пачку, иначе следующие записи окажутся после оборванной
+            try {
+                channel.truncate(startPosition);
+                channel.position(startPosition);
+            } catch (IOException ignored) {
+                // Оборванная запись будет отрезана при следующей загрузке
+            }
+            return false;
+        }
+    }
+
+    // Сворачивает журнал в снимок. Данные в памяти уже содержат все записи журнала,
+    // поэтому снимок пишется из памяти, а журнал обрезается только после успешной записи.
+    // Если сервер упадет между этими шагами, повторное проигрывание журнала безопасно.
+    private void compact(Records records) throws IOException {
+        if (!snapshot.save(records, List.of())) {
+            return;
+        }
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        journalBytes = 0;
+        compactions++;
+    }
+
+    private static byte[] encodeName(String name) {
+        if (name == null) {
+            return new byte[0];
+        }
+        // Ники Minecraft не длиннее 16 символов, это просто защита формата
+        return truncateUtf8(name.getBytes(StandardCharsets.UTF_8), MAX_NAME_BYTES);
+    }
+
+    // Обрезает строку UTF-8 до maxBytes по границе символа: половина многобайтного символа
+    // при чтении превратилась бы в испорченный символ
+    static byte[] truncateUtf8(byte[] bytes, int maxBytes) {
+        if (bytes.length <= maxBytes) {
+            return bytes;
+        }
+        int length = maxBytes;
+        // Байты продолжения (10xxxxxx) принадлежат символу, начатому раньше - отрезаем его целиком
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    @Override
+    public String describe() {
+        return "journal (журнал: " + (journalBytes / 1024) + " KB, записей: " + appendedRecords
+                + ", сжатий: " + compactions + ")";
+    }
+
+    // Записи журнала и снимки player_sizes.json при сжатии
+    @Override
+    public long getBytesWritten() {
+        return appendedBytes + snapshot.getBytesWritten();
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("Ошибка при закрытии журнала данных игроков: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.meows.playersize;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+// Классический формат: весь player_sizes.json перезаписывается целиком
+public class JsonPlayerStorage implements PlayerDataStorage {
+
+    public static final String DATA_FILE = "player_sizes.json";
+
+    private final File dataFolder;
+    private final Logger logger;
+    private final Gson gson;
+    private final File dataFile;
+    private final boolean migrateOtherFormats;
+    private volatile long bytesWritten;
+
+    public JsonPlayerStorage(PlayerSizePlugin plugin, boolean migrateOtherFormats) {
+        this(plugin.getDataFolder(), plugin.getLogger(), migrateOtherFormats);
+    }
+
+    // Без сервера: папка данных и логгер (тесты и замеры)
+    JsonPlayerStorage(File dataFolder, Logger logger, boolean migrateOtherFormats) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.dataFile = new File(dataFolder, DATA_FILE);
+        this.migrateOtherFormats = migrateOtherFormats;
+    }
+
+    @Override
+    public void load(Records records) {
+        loadJson(records);
+
+        if (!migrateOtherFormats) {
+            return;
+        }
+
+        // Если раньше использовался режим journal, дописываем хвост журнала и переносим его в JSON
+        File journalFile = new File(dataFolder, JournalPlayerStorage.JOURNAL_FILE);
+        if (journalFile.exists()) {
+            int replayed = JournalPlayerStorage.replay(logger, journalFile, records);
+            if (save(records, List.of())) {
+                journalFile.delete();
+                logger.info("Журнал перенесен в " + DATA_FILE + ": " + replayed + " записей");
+            }
+        }
+
+        importBinary(records);
+    }
+
+    // Если раньше использовался режим binary, экспортируем player_sizes.dat в JSON
+    // (при возврате на json и при переходе на journal). Бинарные файлы не удаляются, а переименовываются в .bak
+    void importBinary(Records records) {
+        File binaryFile = new File(dataFolder, MappedPlayerStorage.DATA_FILE);
+        if (!binaryFile.exists()) {
+            return;
+        }
+        int exported = MappedPlayerStorage.readInto(dataFolder, logger, records);
+        if (exported >= 0 && save(records, List.of())) {
+            File namesFile = new File(dataFolder, MappedPlayerStorage.NAMES_FILE);
+            binaryFile.renameTo(new File(dataFolder, MappedPlayerStorage.DATA_FILE + ".bak"));
+            namesFile.renameTo(new File(dataFolder, MappedPlayerStorage.NAMES_FILE + ".bak"));
+            logger.info(MappedPlayerStorage.DATA_FILE + " экспортирован в " + DATA_FILE + ": "
+                    + exported + " записей");
+        }
+    }
+
+    private void loadJson(Records records) {
+        if (!dataFile.exists()) {
+            return;
+        }
+
+        try {
+            String json = new String(Files.readAllBytes(dataFile.toPath()));
+
+            // Пытаемся загрузить новую структуру (с объектами)
+            try {
+                Type type = new TypeToken<Map<String, PlayerSizeEntry>>() {
+                }.getType();
+                Map<String, PlayerSizeEntry> entryMap = gson.fromJson(json, type);
+
+                if (entryMap != null && !entryMap.isEmpty()) {
+                    int loaded = 0;
+                    for (Map.Entry<String, PlayerSizeEntry> entry : entryMap.entrySet()) {
+                        try {
+                            UUID uuid = UUID.fromString(entry.getKey());
+                            PlayerSizeEntry sizeEntry = entry.getValue();
+
+                            if (sizeEntry != null) {
+                                String name = sizeEntry.name != null && !sizeEntry.name.isEmpty()
+                                        ? sizeEntry.name
+                                        : null;
+                                records.loadEntry(uuid, sizeEntry.size, name);
+                                if (sizeEntry.size != null) {
+                                    loaded++;
+                                }
+                            }
+                        } catch (IllegalArgumentException e) {
+                            logger.warning("Некорректный UUID в данных: " + entry.getKey());
+                        }
+                    }
+                    logger.info("Загружено размеров игроков: " + loaded);
+                    return;
+                }
+            } catch (Exception e) {
+                // Если не получилось загрузить новую структуру, пробуем старую
+            }
+
+            // Загрузка старого формата (просто Map<String, Double>)
+            Type type = new TypeToken<Map<String, Double>>() {
+            }.getType();
+            Map<String, Double> stringMap = gson.fromJson(json, type);
+
+            if (stringMap != null) {
+                int loaded = 0;
+                for (Map.Entry<String, Double> entry : stringMap.entrySet()) {
+                    if (entry.getValue() == null) {
+                        continue;
+                    }
+                    try {
+                        UUID uuid = UUID.fromString(entry.getKey());
+                        records.loadEntry(uuid, entry.getValue(), null);
+                        loaded++;
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Некорректный UUID в данных: " + entry.getKey());
+                    }
+                }
+                logger.info("Загружено размеров игроков (старый формат): " + loaded);
+            }
+        } catch (IOException e) {
+            logger.warning("Ошибка при загрузке данных игроков: " + e.getMessage());
+        }
+    }
+
+    // JSON-формат не умеет дописывать, поэтому файл перезаписывается целиком
+    @Override
+    public boolean save(Records records, Collection<UUID> dirtyEntries) {
+        try {
+            if (!dataFile.getParentFile().exists()) {
+                dataFile.getParentFile().mkdirs();
+            }
+
+            // Конвертируем в новую структуру с никами
+            Map<String, PlayerSizeEntry> entryMap = new HashMap<>();
+            records.forEachEntry((uuid, size, name) -> {
+                PlayerSizeEntry sizeEntry = new PlayerSizeEntry();
+                // Без заданного размера сохраняется только ник
+                sizeEntry.size = Double.isNaN(size) ? null : size;
+                sizeEntry.name = name != null ? name : "Unknown";
+
+                entryMap.put(uuid.toString(), sizeEntry);
+            });
+
+            byte[] json = gson.toJson(entryMap).getBytes();
+
+            // Пишем во временный файл и атомарно подменяем, чтобы не получить
+            // обрезанный JSON при падении сервера во время записи
+            File tempFile = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+            Files.write(tempFile.toPath(), json);
+            bytesWritten += json.length;
+            Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            logger.info("Данные игроков сохранены: " + entryMap.size() + " записей");
+            return true;
+        } catch (IOException e) {
+            logger.severe("Ошибка при сохранении данных игроков: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return "json (" + (dataFile.length() / 1024) + " KB)";
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Класс для хранения данных игрока в JSON
+    private static class PlayerSizeEntry {
+        public Double size;
+        public String name;
+    }
+}
@@ -0,0 +1,583 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+
+// Бинарный формат с отображением файла в память (memory-mapped).
+// player_sizes.dat - хеш-таблица с открытой адресацией прямо на диске, поэтому
+// поиск и обновление записи не требуют полной загрузки или перезаписи файла.
+// player_sizes.names - пул ников (UTF-8), дописывается только в конец.
+//
+// Заголовок (32 байта): [int magic][int версия][int емкость][int количество][16 байт резерв]
+// Слот (24 байта): [long uuidMost][long uuidLeast][short размер*10000][byte длина ника][byte флаги][int смещение ника]
+// Размер хранится с точностью до 0.0001 (storedSize), поэтому /playersize set округляет значение заранее.
+//
+// Пишет только поток сохранения. Поиск (основной и асинхронные потоки) читает слоты оптимистично,
+// как PlayerSizeTable: блокировка записи берется только на время изменения слотов в памяти.
+// Ники дописываются в пул, сброс на диск (force) и копия файла перед расширением идут до или после нее,
+// поэтому поиск не ждет ввода-вывода.
+public class MappedPlayerStorage implements PlayerDataStorage {
+
+    public static final String DATA_FILE = "player_sizes.dat";
+    public static final String NAMES_FILE = "player_sizes.names";
+
+    private static final int MAGIC = 0x50535A42; // "PSZB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 24;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final double SIZE_SCALE = 10000.0;
+    private static final byte FLAG_USED = 1;
+    private static final int MAX_NAME_BYTES = 255;
+    // Ник записи не меняется (см. appendName)
+    private static final long NAME_UNCHANGED = -1;
+
+    private final File dataFolder;
+    private final Logger logger;
+    private final File dataFile;
+    private final File namesFile;
+    // Изменение слотов и подмена отображения - под блокировкой записи
+    private final StampedLock lock = new StampedLock();
+    // Весь ввод-вывод потока сохранения (запись, сброс, расширение, закрытие) идет под этим объектом
+    private final Object writeMonitor = new Object();
+    private FileChannel dataChannel;
+    private FileChannel namesChannel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private long namesLength;
+    // Слоты и ники, измененные через put, и файлы, пересозданные при росте таблицы.
+    // Реально на диск уходят целые страницы, поэтому это нижняя оценка
+    private volatile long bytesWritten;
+
+    public MappedPlayerStorage(PlayerSizePlugin plugin) {
+        this(plugin.getDataFolder(), plugin.getLogger());
+    }
+
+    // Без сервера: папка данных и логгер (тесты и замеры)
+    MappedPlayerStorage(File dataFolder, Logger logger) {
+        this(dataFolder, logger, new File(dataFolder, DATA_FILE), new File(dataFolder, NAMES_FILE));
+    }
+
+    // Хранилище в других файлах (импорт собирается во временных файлах)
+    private MappedPlayerStorage(File dataFolder, Logger logger, File dataFile, File namesFile) {
+        this.dataFolder = dataFolder;
+        this.logger = logger;
+        this.dataFile = dataFile;
+        this.namesFile = namesFile;
+    }
+
+    // Загрузка идет до запуска потока сохранения и до первого поиска
+    @Override
+    public void load(Records records) {
+        // Файл появляется только после полностью успешного импорта
+        boolean imported = !dataFile.exists();
+        if (imported && !importFromJson(records)) {
+            return;
+        }
+
+        try {
+            open();
+        } catch (IOException e) {
+            logger.severe("Не удалось открыть " + DATA_FILE + ": " + e.getMessage());
+            // Файл мог успеть отобразиться до проверки заголовка - писать в него нельзя
+            close();
+            return;
+        }
+        if (imported) {
+            // Данные уже загружены в менеджер при импорте
+            return;
+        }
+
+        try {
+            int loaded = readAll(records);
+            logger.info("Загружено размеров игроков (binary): " + loaded);
+        } catch (IOException e) {
+            logger.severe("Ошибка чтения " + NAMES_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Последовательный проход по слотам без разбора текста
+    // Пул ников читается целиком одним вызовом, а не отдельным чтением на каждый ник
+    private int readAll(Records records) throws IOException {
+        ByteBuffer names = ByteBuffer.allocate((int) namesLength);
+        while (names.hasRemaining() && namesChannel.read(names, names.position()) >= 0) {
+            // Читаем до конца пула
+        }
+        byte[] pool = names.array();
+
+        int loaded = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = slotOffset(slot);
+            if (buffer.get(offset + 19) != FLAG_USED) {
+                continue;
+            }
+            UUID uuid = new UUID(buffer.getLong(offset), buffer.getLong(offset + 8));
+            Double size = decodeSize(buffer.getShort(offset + 16));
+            int nameLength = buffer.get(offset + 18) & 0xFF;
+            int nameOffset = buffer.getInt(offset + 20);
+            String name = nameLength > 0 && nameOffset + nameLength <= pool.length
+                    ? new String(pool, nameOffset, nameLength, StandardCharsets.UTF_8)
+                    : null;
+            records.loadEntry(uuid, size, name);
+            if (size != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    // Первый запуск в режиме binary: переносим данные из player_sizes.json (и журнала, если он есть).
+    // Таблица собирается во временных файлах и переименовывается в player_sizes.dat только после успешного
+    // импорта: оборванный импорт не оставляет частичный файл, и при следующем запуске импорт повторится
+    private boolean importFromJson(Records records) {
+        new JsonPlayerStorage(dataFolder, logger, false).load(records);
+        File journalFile = new File(dataFolder, JournalPlayerStorage.JOURNAL_FILE);
+        if (journalFile.exists()) {
+            JournalPlayerStorage.replay(logger, journalFile, records);
+        }
+
+        File stagingData = new File(dataFile.getParentFile(), DATA_FILE + ".import");
+        File stagingNames = new File(dataFile.getParentFile(), NAMES_FILE + ".import");
+        stagingData.delete();
+        stagingNames.delete();
+        MappedPlayerStorage staging = new MappedPlayerStorage(dataFolder, logger, stagingData, stagingNames);
+        int[] imported = { 0 };
+        try {
+            staging.open();
+            records.forEachEntry((uuid, size, name) -> {
+                try {
+                    staging.ensureCapacity(staging.count + 1);
+                    staging.put(uuid, Double.isNaN(size) ? null : size,
+                            name != null ? staging.appendName(name) : NAME_UNCHANGED);
+                    imported[0]++;
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            staging.flushToDisk();
+        } catch (IOException | IllegalStateException e) {
+            logger.severe("Ошибка импорта данных игроков в " + DATA_FILE + ": " + e.getMessage()
+                    + ". Импорт повторится при следующем запуске");
+            staging.close();
+            stagingData.delete();
+            stagingNames.delete();
+            return false;
+        }
+        staging.close();
+
+        try {
+            // Пул ников первым: player_sizes.dat без пула не появится
+            Files.move(stagingNames.toPath(), namesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(stagingData.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.severe("Не удалось сохранить импортированный " + DATA_FILE + ": " + e.getMessage()
+                    + ". Импорт повторится при следующем запуске");
+            return false;
+        }
+        bytesWritten += staging.bytesWritten;
+
+        if (journalFile.exists()) {
+            journalFile.delete();
+        }
+        logger.info("Данные игроков импортированы из " + JsonPlayerStorage.DATA_FILE + " в "
+                + DATA_FILE + ": " + imported[0] + " записей");
+        return true;
+    }
+
+    // Чтение player_sizes.dat для экспорта в JSON (вызывается из JsonPlayerStorage при возврате на type: json)
+    static int readInto(File dataFolder, Logger logger, Records records) {
+        MappedPlayerStorage storage = new MappedPlayerStorage(dataFolder, logger);
+        try {
+            storage.open();
+            return storage.readAll(records);
+        } catch (IOException e) {
+            logger.severe("Ошибка чтения " + DATA_FILE + ": " + e.getMessage());
+            return -1;
+        } finally {
+            storage.close();
+        }
+    }
+
+    private void open() throws IOException {
+        if (!dataFile.getParentFile().exists()) {
+            dataFile.getParentFile().mkdirs();
+        }
+
+        // Сервер упал во время расширения таблицы - возвращаем копию, снятую перед расширением
+        File growBackup = growBackupFile();
+        if (growBackup.exists()) {
+            Files.move(growBackup.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.warning(DATA_FILE + " восстановлен после прерванного расширения таблицы");
+        }
+
+        namesChannel = FileChannel.open(namesFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        namesLength = namesChannel.size();
+
+        if (!dataFile.exists() || dataFile.length() < HEADER_SIZE) {
+            createDataFile(dataFile, INITIAL_CAPACITY);
+        }
+        mapDataFile();
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("неизвестный формат файла");
+        }
+        capacity = buffer.getInt(8);
+        count = buffer.getInt(12);
+    }
+
+    private void mapDataFile() throws IOException {
+        dataChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataChannel.size());
+    }
+
+    private static void createDataFile(File file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(0);
+            header.flip();
+            channel.write(header, 0);
+            // Расширяем файл до нужного размера (пустые слоты заполнены нулями)
+            channel.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) capacity * SLOT_SIZE - 1);
+        }
+    }
+
+    @Override
+    public boolean save(Records records, Collection<UUID> dirtyEntries) {
+        synchronized (writeMonitor) {
+            if (buffer == null) {
+                return false;
+            }
+
+            try {
+                // Слоты меняет только этот поток, поэтому читать их до блокировки можно.
+                // Без блокировки считаем новые записи (копия файла для расширения снимается без нее)
+                // и дописываем измененные ники в пул: под блокировкой записи остается только запись слотов
+                UUID[] uuids = dirtyEntries.toArray(new UUID[0]);
+                Double[] sizes = new Double[uuids.length];
+                long[] names = new long[uuids.length];
+                int added = 0;
+                for (int i = 0; i < uuids.length; i++) {
+                    UUID uuid = uuids[i];
+                    sizes[i] = records.getResidentSize(uuid);
+                    String name = records.getResidentName(uuid);
+                    int slot = findSlot(uuid);
+                    boolean used = slot >= 0 && buffer.get(slotOffset(slot) + 19) == FLAG_USED;
+                    if (!used) {
+                        added++;
+                    }
+                    names[i] = name == null || used && name.equals(readName(slotOffset(slot)))
+                            ? NAME_UNCHANGED
+                            : appendName(name);
+                }
+                ensureCapacity(count + added);
+                long stamp = lock.writeLock();
+                try {
+                    for (int i = 0; i < uuids.length; i++) {
+                        put(uuids[i], sizes[i], names[i]);
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                flushToDisk();
+                return true;
+            } catch (IOException e) {
+                logger.severe("Ошибка при записи " + DATA_FILE + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsLookup() {
+        return true;
+    }
+
+    // Поиск записи прямо в отображенном файле, без загрузки всей таблицы.
+    // Чтение оптимистичное: блокировка чтения берется, только если чтение совпало с записью слотов.
+    // consumer вызывается после чтения, вне блокировки
+    @Override
+    public boolean lookup(UUID uuid, EntryConsumer consumer) {
+        long[] found = new long[1];
+        String[] name = new String[1];
+
+        long stamp = lock.tryOptimisticRead();
+        int state = -1;
+        if (stamp != 0) {
+            try {
+                state = readSlot(uuid, found, name);
+            } catch (IndexOutOfBoundsException e) {
+                // Отображение подменили во время чтения - validate вернет false
+            }
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                state = readSlot(uuid, found, name);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        if (state <= 0) {
+            return false;
+        }
+        Double size = decodeSize((short) found[0]);
+        consumer.accept(uuid, size != null ? size : Double.NaN, name[0]);
+        return true;
+    }
+
+    // 1 - запись найдена (размер в found[0], ник в name[0]), 0 - записи нет, -1 - хранилище закрыто
+    private int readSlot(UUID uuid, long[] found, String[] name) {
+        if (buffer == null) {
+            return -1;
+        }
+        int slot = findSlot(uuid);
+        if (slot < 0 || buffer.get(slotOffset(slot) + 19) != FLAG_USED) {
+            return 0;
+        }
+        found[0] = buffer.getShort(slotOffset(slot) + 16);
+        name[0] = readName(slotOffset(slot));
+        return 1;
+    }
+
+    // Обновление на месте: пишем только слот. name - ник, уже дописанный в пул (appendName),
+    // или NAME_UNCHANGED
+    private void put(UUID uuid, Double size, long name) throws IOException {
+        int slot = findSlot(uuid);
+        int offset = slotOffset(slot);
+        boolean isNew = buffer.get(offset + 19) != FLAG_USED;
+        // Пустую запись не создаем, но у существующей размер можно убрать
+        if (size == null && name == NAME_UNCHANGED && isNew) {
+            return;
+        }
+
+        if (isNew && count + 1 > capacity * MAX_LOAD_FACTOR) {
+            // save() заранее расширяет таблицу под всю пачку
+            throw new IOException("нет места в таблице");
+        }
+
+        if (isNew) {
+            buffer.putLong(offset, uuid.getMostSignificantBits());
+            buffer.putLong(offset + 8, uuid.getLeastSignificantBits());
+            buffer.put(offset + 18, (byte) 0);
+            buffer.putInt(offset + 20, 0);
+            count++;
+            buffer.putInt(12, count);
+        }
+
+        buffer.putShort(offset + 16, encodeSize(size));
+        if (name != NAME_UNCHANGED) {
+            buffer.putInt(offset + 20, (int) (name >>> 8));
+            buffer.put(offset + 18, (byte) name);
+        }
+        buffer.put(offset + 19, FLAG_USED);
+        bytesWritten += SLOT_SIZE;
+    }
+
+    // Линейное пробирование. Возвращает слот с этим UUID или первый пустой
+    private int findSlot(UUID uuid) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        int mask = capacity - 1;
+        int slot = PlayerSizeTable.hash(most, least) & mask;
+
+        for (int i = 0; i < capacity; i++) {
+            int offset = slotOffset(slot);
+            if (buffer.get(offset + 19) != FLAG_USED) {
+                return slot;
+            }
+            if (buffer.getLong(offset) == most && buffer.getLong(offset + 8) == least) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private File growBackupFile() {
+        return new File(dataFile.getParentFile(), dataFile.getName() + ".grow");
+    }
+
+    // Расширяет таблицу, пока в ней не поместятся entries записей (только поток сохранения)
+    private void ensureCapacity(int entries) throws IOException {
+        while (entries > capacity * MAX_LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    // Увеличиваем таблицу вдвое на месте. Отображенный файл нельзя подменить переименованием
+    // (на Windows это запрещено), поэтому файл расширяется новым отображением большего размера,
+    // а слоты перекладываются внутри него. Перед этим снимается копия старого файла:
+    // если сервер упадет посреди перекладки, open() вернет копию.
+    // Копия и сброс на диск идут без блокировки, под блокировкой записи - только перекладка в памяти
+    private void grow() throws IOException {
+        int newCapacity = capacity * 2;
+        long oldLength = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+
+        buffer.force();
+        File backup = growBackupFile();
+        try (FileChannel backupChannel = FileChannel.open(backup.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long copied = 0;
+            while (copied < oldLength) {
+                copied += dataChannel.transferTo(copied, oldLength - copied, backupChannel);
+            }
+            backupChannel.force(true);
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            relocate(newCapacity, oldLength);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        buffer.force();
+        Files.delete(backup.toPath());
+        bytesWritten += oldLength + HEADER_SIZE + (long) newCapacity * SLOT_SIZE;
+    }
+
+    // Перекладка слотов в отображение большего размера (под блокировкой записи)
+    private void relocate(int newCapacity, long oldLength) throws IOException {
+        // Занятые слоты - во временный массив (count * 24 байта)
+        byte[] slots = new byte[count * SLOT_SIZE];
+        int used = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = slotOffset(slot);
+            if (buffer.get(offset + 19) == FLAG_USED) {
+                buffer.get(offset, slots, used * SLOT_SIZE, SLOT_SIZE);
+                used++;
+            }
+        }
+
+        // Отображение большего размера расширяет файл, новая часть заполнена нулями
+        buffer = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+        byte[] zeros = new byte[SLOT_SIZE * 1024];
+        for (long position = HEADER_SIZE; position < oldLength; position += zeros.length) {
+            buffer.put((int) position, zeros, 0, (int) Math.min(zeros.length, oldLength - position));
+        }
+
+        capacity = newCapacity;
+        buffer.putInt(8, capacity);
+        int mask = newCapacity - 1;
+        ByteBuffer slotView = ByteBuffer.wrap(slots);
+        for (int i = 0; i < used; i++) {
+            int from = i * SLOT_SIZE;
+            int newSlot = PlayerSizeTable.hash(slotView.getLong(from), slotView.getLong(from + 8)) & mask;
+            while (buffer.get(slotOffset(newSlot) + 19) == FLAG_USED) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            buffer.put(slotOffset(newSlot), slots, from, SLOT_SIZE);
+        }
+    }
+
+    private String readName(int offset) {
+        int length = buffer.get(offset + 18) & 0xFF;
+        if (length == 0) {
+            return null;
+        }
+        try {
+            ByteBuffer nameBuffer = ByteBuffer.allocate(length);
+            namesChannel.read(nameBuffer, buffer.getInt(offset + 20) & 0xFFFFFFFFL);
+            return new String(nameBuffer.array(), 0, nameBuffer.position(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Дописывает ник в конец пула (без блокировки, слот на него еще не указывает).
+    // Возвращает смещение в пуле и длину одним числом: [смещение << 8 | длина]
+    private long appendName(String name) throws IOException {
+        byte[] bytes = JournalPlayerStorage.truncateUtf8(name.getBytes(StandardCharsets.UTF_8), MAX_NAME_BYTES);
+        long offset = namesLength;
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        while (source.hasRemaining()) {
+            namesChannel.write(source, offset + source.position());
+        }
+        namesLength += bytes.length;
+        bytesWritten += bytes.length;
+        return offset << 8 | bytes.length;
+    }
+
+    private void flushToDisk() throws IOException {
+        namesChannel.force(false);
+        buffer.force();
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    // Значение, которое окажется на диске: точность 0.0001 в диапазоне 0.0001..6.5535
+    @Override
+    public double storedSize(double size) {
+        return decodeSize(encodeSize(size));
+    }
+
+    private static short encodeSize(Double size) {
+        if (size == null) {
+            return 0;
+        }
+        long quantized = Math.round(size * SIZE_SCALE);
+        return (short) Math.max(1, Math.min(0xFFFF, quantized));
+    }
+
+    private static Double decodeSize(short raw) {
+        int quantized = raw & 0xFFFF;
+        return quantized == 0 ? null : quantized / SIZE_SCALE;
+    }
+
+    // Файл не открылся или импорт не удался: сохранять некуда
+    @Override
+    public boolean isAvailable() {
+        return buffer != null;
+    }
+
+    @Override
+    public String describe() {
+        return "binary (записей: " + count + ", емкость: " + capacity + ", "
+                + ((HEADER_SIZE + (long) capacity * SLOT_SIZE + namesLength) / 1024) + " KB)";
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void close() {
+        synchronized (writeMonitor) {
+            long stamp = lock.writeLock();
+            try {
+                if (buffer != null) {
+                    buffer.force();
+                }
+                if (dataChannel != null) {
+                    dataChannel.close();
+                }
+                if (namesChannel != null) {
+                    namesChannel.close();
+                }
+                buffer = null;
+            } catch (IOException e) {
+                logger.warning("Ошибка при закрытии " + DATA_FILE + ": " + e.getMessage());
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+}
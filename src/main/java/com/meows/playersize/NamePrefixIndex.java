@@ -0,0 +1,97 @@
+package com.meows.playersize;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Отсортированный (без учета регистра) массив ников для автодополнения.
+// Поиск по префиксу - бинарный поиск начала диапазона и проход до первого несовпадения,
+// без приведения строк к нижнему регистру и без промежуточных коллекций.
+public class NamePrefixIndex {
+
+    private static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER;
+
+    private String[] names = new String[64];
+    private int count;
+
+    // Полная перестройка (после загрузки данных): одна сортировка вместо вставок по одному
+    public synchronized void rebuild(Collection<String> allNames) {
+        String[] sorted = allNames.toArray(new String[0]);
+        Arrays.sort(sorted, ORDER);
+
+        // Убираем дубликаты, отличающиеся только регистром
+        int unique = 0;
+        for (String name : sorted) {
+            if (unique == 0 || ORDER.compare(sorted[unique - 1], name) != 0) {
+                sorted[unique++] = name;
+            }
+        }
+
+        names = Arrays.copyOf(sorted, Math.max(64, unique));
+        count = unique;
+    }
+
+    // Добавляет ник или заменяет ник с тем же написанием без учета регистра
+    public synchronized void add(String name) {
+        int index = Arrays.binarySearch(names, 0, count, name, ORDER);
+        if (index >= 0) {
+            names[index] = name;
+            return;
+        }
+
+        int insertAt = -index - 1;
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        System.arraycopy(names, insertAt, names, insertAt + 1, count - insertAt);
+        names[insertAt] = name;
+        count++;
+    }
+
+    public synchronized void remove(String name) {
+        int index = Arrays.binarySearch(names, 0, count, name, ORDER);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(names, index + 1, names, index, count - index - 1);
+        names[--count] = null;
+    }
+
+    // Добавляет в out не больше limit ников, начинающихся с prefix (без учета регистра).
+    // Ники, для которых skip возвращает true, пропускаются (например, уже добавленные онлайн игроки)
+    public synchronized void complete(String prefix, int limit, List<String> out, Predicate<String> skip) {
+        int index = lowerBound(prefix);
+        int prefixLength = prefix.length();
+
+        while (index < count && out.size() < limit) {
+            String name = names[index++];
+            if (!name.regionMatches(true, 0, prefix, 0, prefixLength)) {
+                break;
+            }
+            if (!skip.test(name)) {
+                out.add(name);
+            }
+        }
+    }
+
+    // Первый индекс, ник на котором не меньше prefix
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(names[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+}
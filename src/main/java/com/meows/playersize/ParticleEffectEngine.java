@@ -0,0 +1,181 @@
+package com.meows.playersize;
+
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Эффект изменения роста: кольцо оранжевых частиц и сердечки над существом.
+// Смещения кольца посчитаны заранее, частицы отправляются только игрокам в радиусе
+// performance.particle-view-radius. Общий лимит performance.particle-budget-per-tick
+// не дает массовым операциям завалить клиентов частицами: эффекты сначала прореживаются, потом пропускаются.
+// Все методы вызываются из основного потока.
+public class ParticleEffectEngine {
+
+    static final int RING_POINTS = 30;
+    static final double RING_RADIUS = 0.5;
+    static final int HEART_COUNT = 10;
+    // Полный эффект для одного зрителя: точки кольца и сердечки (пакет с count = 10 - это 10 частиц)
+    static final int FULL_COST = RING_POINTS + HEART_COUNT;
+
+    // Смещения точек кольца по X и Z
+    static final double[] RING_X = new double[RING_POINTS];
+    static final double[] RING_Z = new double[RING_POINTS];
+
+    static {
+        for (int i = 0; i < RING_POINTS; i++) {
+            double angle = 2 * Math.PI * i / RING_POINTS;
+            RING_X[i] = Math.cos(angle) * RING_RADIUS;
+            RING_Z[i] = Math.sin(angle) * RING_RADIUS;
+        }
+    }
+
+    private final PlayerSizePlugin plugin;
+    // Оранжевый цвет, один объект на все частицы
+    private final Particle.DustOptions dust = new Particle.DustOptions(Color.fromRGB(255, 165, 0), 1.0f);
+    // Переиспользуемый список зрителей
+    private final List<Player> viewers = new ArrayList<>();
+
+    // Сколько частиц уже отправлено в текущем тике
+    private int spentThisTick;
+    private boolean resetScheduled;
+
+    // Метрики для /playersize stats
+    private long effectsPlayed;
+    private long effectsThinned;
+    private long effectsSkipped;
+    private long particlesSent;
+
+    public ParticleEffectEngine(PlayerSizePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void play(LivingEntity entity) {
+        Location location = entity.getLocation();
+        World world = location.getWorld();
+
+        // Звук отправляет сам сервер, он дешевый и не зависит от лимита частиц
+        world.playSound(location, Sound.ENTITY_PLAYER_LEVELUP, 1.0f, 1.2f);
+
+        int budget = plugin.getConfigManager().getParticleBudgetPerTick();
+        if (budget == 0) {
+            effectsSkipped++;
+            return;
+        }
+
+        collectViewers(world, location);
+        if (viewers.isEmpty()) {
+            return;
+        }
+
+        // Каждому зрителю: точки кольца + сердечки. Лимит считает частицы, а не пакеты
+        int perViewer = perViewer(budget, spentThisTick, viewers.size());
+        if (perViewer < 2) {
+            // Лимит тика исчерпан - эффект пропускаем
+            effectsSkipped++;
+            viewers.clear();
+            return;
+        }
+
+        int hearts = heartsFor(perViewer);
+        int step = ringStepFor(perViewer);
+        if (perViewer < FULL_COST) {
+            effectsThinned++;
+        }
+
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+        double height = entity.getHeight();
+        double ringY = y + height / 2;
+        int sent = 0;
+
+        for (Player viewer : viewers) {
+            for (int i = 0; i < RING_POINTS; i += step) {
+                viewer.spawnParticle(Particle.DUST, x + RING_X[i], ringY, z + RING_Z[i], 1, dust);
+                sent++;
+            }
+            // Столбик сердечек сверху одним пакетом
+            viewer.spawnParticle(Particle.HEART, x, y + height + HEART_COUNT * 0.05, z, hearts, 0.3, 0.5, 0.3);
+            sent += hearts;
+        }
+        viewers.clear();
+
+        charge(sent);
+        effectsPlayed++;
+    }
+
+    // Сколько частиц остается на одного зрителя в текущем тике. Меньше 2 - эффект пропускается
+    static int perViewer(int budget, int spent, int viewerCount) {
+        return (budget - spent) / viewerCount;
+    }
+
+    // Не хватает на полный эффект - кольцо и сердечки прореживаются в той же пропорции:
+    // меньше сердечек и каждая step-ая точка кольца
+    static int heartsFor(int perViewer) {
+        if (perViewer >= FULL_COST) {
+            return HEART_COUNT;
+        }
+        return Math.max(1, HEART_COUNT * perViewer / FULL_COST);
+    }
+
+    static int ringStepFor(int perViewer) {
+        if (perViewer >= FULL_COST) {
+            return 1;
+        }
+        int ringBudget = perViewer - heartsFor(perViewer);
+        return (RING_POINTS + ringBudget - 1) / ringBudget;
+    }
+
+    // Частиц на одного зрителя при выбранном прореживании
+    static int costFor(int perViewer) {
+        int step = ringStepFor(perViewer);
+        return (RING_POINTS + step - 1) / step + heartsFor(perViewer);
+    }
+
+    private void collectViewers(World world, Location location) {
+        double radius = plugin.getConfigManager().getParticleViewRadius();
+        double radiusSquared = radius * radius;
+        for (Player player : world.getPlayers()) {
+            if (player.getLocation().distanceSquared(location) <= radiusSquared) {
+                viewers.add(player);
+            }
+        }
+    }
+
+    private void charge(int sent) {
+        particlesSent += sent;
+        spentThisTick += sent;
+        if (!resetScheduled) {
+            // Лимит обнуляется в начале следующего тика
+            resetScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                spentThisTick = 0;
+                resetScheduled = false;
+            });
+        }
+    }
+
+    // Getters для метрик
+    public long getEffectsPlayed() {
+        return effectsPlayed;
+    }
+
+    public long getEffectsThinned() {
+        return effectsThinned;
+    }
+
+    public long getEffectsSkipped() {
+        return effectsSkipped;
+    }
+
+    public long getParticlesSent() {
+        return particlesSent;
+    }
+}
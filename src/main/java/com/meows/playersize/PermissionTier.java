@@ -0,0 +1,5 @@
+package com.meows.playersize;
+
+// Тир размеров: игроки с правом permission получают настройки профиля вместо общих sizes и health
+public record PermissionTier(String permission, SizeProfile profile) {
+}
@@ -0,0 +1,64 @@
+package com.meows.playersize;
+
+import java.util.Collection;
+import java.util.UUID;
+
+// Формат хранения данных игроков на диске (выбирается через storage.type)
+public interface PlayerDataStorage {
+
+    // Загружает все записи через Records.loadEntry
+    void load(Records records);
+
+    // Сохраняет измененные записи. Вызывается только из потока AsyncSaveManager
+    boolean save(Records records, Collection<UUID> dirtyEntries);
+
+    // Готово ли хранилище к сохранению после load. Если нет, PlayerSizeManager переходит на json
+    default boolean isAvailable() {
+        return true;
+    }
+
+    // Умеет ли формат читать отдельную запись с диска без загрузки всех записей
+    default boolean supportsLookup() {
+        return false;
+    }
+
+    // Чтение одной записи с диска. Возвращает false, если записи нет.
+    // Размер передается как NaN, если он не задан
+    default boolean lookup(UUID uuid, EntryConsumer consumer) {
+        return false;
+    }
+
+    // Размер в том виде, в каком он будет сохранен (формат может хранить его с ограниченной точностью)
+    default double storedSize(double size) {
+        return size;
+    }
+
+    // Короткое описание состояния хранилища для /playersize stats
+    String describe();
+
+    // Сколько байт записано на диск с момента запуска. Вместе с количеством сохраненных записей
+    // показывает, во что обходится одно изменение (write amplification) в /playersize stats
+    long getBytesWritten();
+
+    void close();
+
+    // Обход всех записей без копирования карт
+    interface EntryConsumer {
+        void accept(UUID uuid, double size, String name);
+    }
+
+    // Записи в памяти, которые хранилище загружает и сохраняет (PlayerSizeManager).
+    // Хранилищу больше ничего от сервера не нужно, поэтому форматы можно проверять без него
+    interface Records {
+        // Добавление записи при загрузке (size = null - размер не задан)
+        void loadEntry(UUID uuid, Double size, String name);
+
+        // Все записи для полной перезаписи: заданные размеры и ники без размера (size = NaN)
+        void forEachEntry(EntryConsumer consumer);
+
+        // Текущее значение измененной записи (null - размер не задан)
+        Double getResidentSize(UUID uuid);
+
+        String getResidentName(UUID uuid);
+    }
+}
@@ -1,163 +1,544 @@
 package com.meows.playersize;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import org.bukkit.Bukkit;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.Type;
-import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Predicate;
 
-public class PlayerSizeManager {
+public class PlayerSizeManager implements PlayerDataStorage.Records {
 
     private final JavaPlugin plugin;
-    private final Gson gson;
-    private Map<UUID, Double> playerSizes;
-    private Map<UUID, String> playerNames;
-    private File dataFile;
+    // Размеры и ники без упаковки в объекты. Безопасна для чтения и записи из любых потоков
+    private final PlayerSizeTable table;
+    // Индекс ник (в нижнем регистре) -> UUID игрока, который последним заходил с этим ником
+    private final Map<String, UUID> nameIndex;
+    // Отсортированные ники для автодополнения (перестраивается один раз после загрузки)
+    private final NamePrefixIndex prefixIndex;
+    // Таблица лидеров по росту, обновляется при каждом изменении размера
+    private final SizeLeaderboard leaderboard;
+    private volatile boolean loading;
+    // Меняется только при загрузке, если выбранный формат не открылся (переход на json)
+    private PlayerDataStorage storage;
+    private final AsyncSaveManager saveManager;
+    // Единая очередь применения атрибутов (одна задача на тик вместо задачи на каждого игрока)
+    private final AttributeApplyQueue applyQueue;
+    // Последние записанные значения атрибутов: повторная запись того же значения пропускается
+    private final Map<UUID, AppliedAttributes> appliedAttributes = new ConcurrentHashMap<>();
+    private final AtomicLong attributeWritesPerformed = new AtomicLong();
+    private final AtomicLong attributeWritesAvoided = new AtomicLong();
+    // Записи, которые вернули значение, измененное другим плагином или командой
+    private final AtomicLong externalChangesReverted = new AtomicLong();
+    // Размеры по умолчанию вычисляются из UUID, хранятся только явно заданные размеры
+    private final SizeAllocator allocator;
+    // Игроки с размером по умолчанию, показанные в таблице лидеров (UUID -> показанный размер).
+    // Показанное значение нужно, чтобы потом убрать игрока из таблицы лидеров: после смены зерна
+    // или настроек его уже не вычислить. Таких игроков большинство, поэтому это та же таблица
+    // с открытой адресацией, что и для заданных размеров (без объектов Double и узлов HashMap)
+    private final PlayerSizeTable listedDefaults = new PlayerSizeTable();
+    // Тир размеров онлайн игроков (permission-tiers). Права проверяются только при входе,
+    // по команде /playersize tier и по сигналу refreshTier от других плагинов.
+    // Игроков без тира здесь нет - для них действуют общие настройки
+    private final Map<UUID, SizeProfile> tiers = new ConcurrentHashMap<>();
+    // Слои размера онлайн игроков: основа и модификаторы (временное зелье, другие плагины)
+    private final Map<UUID, SizeModifierStack> modifierStacks = new ConcurrentHashMap<>();
+    // Пересчеты основы и модификаторов (только основной поток)
+    private final long[] stackRecomputes = new long[2];
 
     public PlayerSizeManager(JavaPlugin plugin) {
         this.plugin = plugin;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
-        this.playerSizes = new HashMap<>();
-        this.playerNames = new HashMap<>();
-        this.dataFile = new File(plugin.getDataFolder(), "player_sizes.json");
+        this.allocator = new SizeAllocator((PlayerSizePlugin) plugin);
+        this.table = new PlayerSizeTable();
+        this.nameIndex = new ConcurrentHashMap<>();
+        this.prefixIndex = new NamePrefixIndex();
+        this.leaderboard = new SizeLeaderboard();
+        this.storage = createStorage((PlayerSizePlugin) plugin);
+        this.saveManager = new AsyncSaveManager((PlayerSizePlugin) plugin, this);
+        this.applyQueue = new AttributeApplyQueue((PlayerSizePlugin) plugin, this);
+    }
+
+    private static PlayerDataStorage createStorage(PlayerSizePlugin plugin) {
+        String type = plugin.getConfigManager().getStorageType();
+        switch (type) {
+            case "journal":
+                return new JournalPlayerStorage(plugin);
+            case "binary":
+                return new MappedPlayerStorage(plugin);
+            case "json":
+                return new JsonPlayerStorage(plugin, true);
+            default:
+                plugin.getLogger().warning("Неизвестный storage.type: " + type + ". Используется json.");
+                return new JsonPlayerStorage(plugin, true);
+        }
     }
 
     public void loadPlayerSizes() {
-        if (!dataFile.exists()) {
+        table.clear();
+        nameIndex.clear();
+        leaderboard.clear();
+        listedDefaults.clear();
+
+        loading = true;
+        try {
+            storage.load(this);
+        } finally {
+            loading = false;
+        }
+        if (!storage.isAvailable()) {
+            // Иначе каждое сохранение будет возвращать false, и изменения пропадут при выключении.
+            // json загружает player_sizes.json заново и переносит журнал, поврежденный файл остается на диске
+            plugin.getLogger().severe("Хранилище storage.type: "
+                    + ((PlayerSizePlugin) plugin).getConfigManager().getStorageType() + " недоступно, данные "
+                    + "игроков до исправления ошибки выше сохраняются в " + JsonPlayerStorage.DATA_FILE);
+            storage.close();
+            storage = new JsonPlayerStorage((PlayerSizePlugin) plugin, true);
+            loadPlayerSizes();
             return;
         }
 
-        try {
-            String json = new String(Files.readAllBytes(dataFile.toPath()));
-
-            // Пытаемся загрузить новую структуру (с объектами)
-            try {
-                Type type = new TypeToken<Map<String, PlayerSizeEntry>>() {
-                }.getType();
-                Map<String, PlayerSizeEntry> entryMap = gson.fromJson(json, type);
-
-                if (entryMap != null && !entryMap.isEmpty()) {
-                    playerSizes = new HashMap<>();
-                    playerNames = new HashMap<>();
-
-                    for (Map.Entry<String, PlayerSizeEntry> entry : entryMap.entrySet()) {
-                        try {
-                            UUID uuid = UUID.fromString(entry.getKey());
-                            PlayerSizeEntry sizeEntry = entry.getValue();
-
-                            if (sizeEntry != null) {
-                                if (sizeEntry.size != null) {
-                                    playerSizes.put(uuid, sizeEntry.size);
-                                }
-
-                                if (sizeEntry.name != null && !sizeEntry.name.isEmpty()) {
-                                    playerNames.put(uuid, sizeEntry.name);
-                                }
-                            }
-                        } catch (IllegalArgumentException e) {
-                            plugin.getLogger().warning("Некорректный UUID в данных: " + entry.getKey());
-                        }
-                    }
-                    plugin.getLogger().info("Загружено размеров игроков: " + playerSizes.size());
-                    return;
-                }
-            } catch (Exception e) {
-                // Если не получилось загрузить новую структуру, пробуем старую
+        List<String> names = new ArrayList<>(nameIndex.size());
+        for (UUID uuid : nameIndex.values()) {
+            String name = table.getName(uuid);
+            if (name != null) {
+                names.add(name);
             }
-
-            // Загрузка старого формата (просто Map<String, Double>)
-            Type type = new TypeToken<Map<String, Double>>() {
-            }.getType();
-            Map<String, Double> stringMap = gson.fromJson(json, type);
-
-            if (stringMap != null) {
-                playerSizes = new HashMap<>();
-                playerNames = new HashMap<>();
-                for (Map.Entry<String, Double> entry : stringMap.entrySet()) {
-                    try {
-                        UUID uuid = UUID.fromString(entry.getKey());
-                        playerSizes.put(uuid, entry.getValue());
-                    } catch (IllegalArgumentException e) {
-                        plugin.getLogger().warning("Некорректный UUID в данных: " + entry.getKey());
-                    }
-                }
-                plugin.getLogger().info("Загружено размеров игроков (старый формат): " + playerSizes.size());
+        }
+        prefixIndex.rebuild(names);
+
+        // Известные игроки без заданного размера (в хранилище только ник) попадают в таблицу лидеров
+        // с размером по умолчанию по общим настройкам. Тир известен только у онлайн игроков,
+        // их размер пересчитывается ниже при playerJoined
+        List<UUID> defaults = new ArrayList<>();
+        table.forEachRecord((uuid, size, name) -> {
+            if (Double.isNaN(size)) {
+                defaults.add(uuid);
             }
-        } catch (IOException e) {
-            plugin.getLogger().warning("Ошибка при загрузке данных игроков: " + e.getMessage());
+        });
+        SizeProfile global = ((PlayerSizePlugin) plugin).getConfigManager().getSnapshot().globalProfile();
+        for (UUID uuid : defaults) {
+            listDefault(uuid, global);
+        }
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            refreshTier(player);
+            playerJoined(player.getUniqueId());
         }
     }
 
-    public void savePlayerSizes() {
-        try {
-            if (!dataFile.getParentFile().exists()) {
-                dataFile.getParentFile().mkdirs();
-            }
+    // Игрок зашел: размер по умолчанию попадает в таблицу лидеров
+    public void playerJoined(UUID uuid) {
+        listDefault(uuid);
+    }
+
+    // Игрок вышел: в таблице лидеров он остается, но размер по умолчанию без тира
+    // считается по общим настройкам
+    public void playerQuit(UUID uuid) {
+        if (tiers.remove(uuid) != null && isListedDefault(uuid)) {
+            listDefault(uuid, ((PlayerSizePlugin) plugin).getConfigManager().getSnapshot().globalProfile());
+        }
+        modifierStacks.remove(uuid);
+    }
+
+    // Размер по умолчанию не хранится, в таблицу лидеров попадает вычисленное значение
+    private void listDefault(UUID uuid) {
+        if (getOverrideSize(uuid) != null) {
+            return;
+        }
+        listDefault(uuid, getTierProfile(uuid));
+    }
 
-            // Конвертируем в новую структуру с никами
-            Map<String, PlayerSizeEntry> entryMap = new HashMap<>();
-            for (Map.Entry<UUID, Double> entry : playerSizes.entrySet()) {
-                UUID uuid = entry.getKey();
-                Double size = entry.getValue();
-                String name = playerNames.get(uuid);
+    // Без проверки заданного размера: вызывающий уже знает, что его нет
+    private void listDefault(UUID uuid, SizeProfile profile) {
+        listedDefaults.putSize(uuid, allocator.defaultSize(uuid, profile), leaderboard::update);
+    }
 
-                PlayerSizeEntry sizeEntry = new PlayerSizeEntry();
-                sizeEntry.size = size;
-                sizeEntry.name = name != null ? name : "Unknown";
+    private void unlistDefault(UUID uuid) {
+        listedDefaults.remove(uuid, leaderboard::update);
+    }
+
+    private boolean isListedDefault(UUID uuid) {
+        return !Double.isNaN(listedDefaults.getSize(uuid));
+    }
 
-                entryMap.put(uuid.toString(), sizeEntry);
+    // Пересчитывает показанный размер по умолчанию (после смены зерна или настроек).
+    // Возвращает false, если игрока нет в таблице лидеров с размером по умолчанию
+    public boolean relistDefault(UUID uuid) {
+        if (!isListedDefault(uuid)) {
+            return false;
+        }
+        listDefault(uuid, getTierProfile(uuid));
+        return true;
+    }
+
+    // UUID игроков с размером по умолчанию в таблице лидеров (копия: таблица меняется при пересчете)
+    public List<UUID> getListedDefaults() {
+        List<UUID> uuids = new ArrayList<>();
+        listedDefaults.forEach((uuid, size, name) -> uuids.add(uuid));
+        return uuids;
+    }
+
+    public SizeAllocator getAllocator() {
+        return allocator;
+    }
+
+    // Проверяет права игрока и запоминает его тир. Возвращает true, если тир (или его настройки) изменился.
+    // Вызывается при входе, по команде и при изменении прав (из основного потока)
+    public boolean refreshTier(Player player) {
+        UUID uuid = player.getUniqueId();
+        SizeProfile resolved = null;
+        for (PermissionTier tier : ((PlayerSizePlugin) plugin).getConfigManager().getSnapshot().permissionTiers()) {
+            // Право должно быть выдано явно: иначе Bukkit считает неизвестное право выданным всем операторам
+            if (player.isPermissionSet(tier.permission()) && player.hasPermission(tier.permission())) {
+                resolved = tier.profile();
+                break;
             }
+        }
+
+        SizeProfile previous = resolved != null ? tiers.put(uuid, resolved) : tiers.remove(uuid);
+        if (Objects.equals(previous, resolved)) {
+            return false;
+        }
+        // Размер по умолчанию зависит от тира
+        relistDefault(uuid);
+        return true;
+    }
 
-            String json = gson.toJson(entryMap);
-            Files.write(dataFile.toPath(), json.getBytes());
+    // Настройки размеров игрока: тир из кэша или общие настройки
+    public SizeProfile getTierProfile(UUID uuid) {
+        return getTierProfile(uuid, ((PlayerSizePlugin) plugin).getConfigManager().getSnapshot());
+    }
 
-            plugin.getLogger().info("Данные игроков сохранены: " + playerSizes.size() + " записей");
-        } catch (IOException e) {
-            plugin.getLogger().severe("Ошибка при сохранении данных игроков: " + e.getMessage());
-            e.printStackTrace();
+    // То же для конкретного снимка конфига (сравнение старого и нового конфига при перезагрузке)
+    public SizeProfile getTierProfile(UUID uuid, ConfigSnapshot config) {
+        SizeProfile tier = tiers.get(uuid);
+        return tier != null ? tier : config.globalProfile();
+    }
+
+    // Новое зерно размеров: все размеры по умолчанию меняются за O(1), без записи на диск.
+    // Сразу пересчитываются только онлайн игроки, таблицу лидеров вызывающий обновляет
+    // через relistDefault (для всех известных игроков это O(n), поэтому по частям)
+    public void rerollDefaults() {
+        allocator.reseed();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            relistDefault(player.getUniqueId());
+        }
+        for (SizeModifierStack stack : modifierStacks.values()) {
+            stack.invalidateBase();
+        }
+    }
+
+    // После смены min-size/max-size: размеры по умолчанию онлайн игроков и основа модификаторов
+    // пересчитываются сразу (новый размер применяется следом). Возвращает остальных показанных
+    // игроков - их пересчитывает по частям BatchJobRunner через relistDefault
+    public List<UUID> refreshOnlineDefaults() {
+        for (SizeModifierStack stack : modifierStacks.values()) {
+            stack.invalidateBase();
+        }
+        Set<UUID> online = new HashSet<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            online.add(player.getUniqueId());
+            relistDefault(player.getUniqueId());
+        }
+        List<UUID> offline = getListedDefaults();
+        offline.removeIf(online::contains);
+        return offline;
+    }
+
+    // Добавление записи при загрузке (без пометки на сохранение)
+    @Override
+    public void loadEntry(UUID uuid, Double size, String name) {
+        if (size != null) {
+            table.putSize(uuid, size, leaderboard::update);
+        } else if (!Double.isNaN(table.getSize(uuid))) {
+            // Более поздняя запись журнала убрала заданный размер
+            table.putSize(uuid, Double.NaN, leaderboard::update);
+        }
+        if (name != null) {
+            indexName(uuid, table.putName(uuid, name), name);
+        }
+    }
+
+    // Обход всех записей для сохранения без копирования таблицы: заданные размеры и ники игроков
+    // без заданного размера (size = NaN)
+    @Override
+    public void forEachEntry(PlayerDataStorage.EntryConsumer consumer) {
+        table.forEachRecord(consumer);
+    }
+
+    // Обход заданных размеров без ников
+    public void forEachOverride(ObjDoubleConsumer<UUID> consumer) {
+        table.forEach((uuid, size, name) -> consumer.accept(uuid, size));
+    }
+
+    public int getPlayerCount() {
+        return leaderboard.size();
+    }
+
+    // Место игрока в таблице лидеров (с 1) или -1, если его там нет (игрок ни разу не заходил)
+    public int getPlayerRank(UUID uuid) {
+        double size = listedDefaults.getSize(uuid);
+        if (Double.isNaN(size)) {
+            Double override = getOverrideSize(uuid);
+            if (override == null) {
+                return -1;
+            }
+            size = override;
         }
+        return leaderboard.rank(uuid, size);
+    }
+
+    // Страница таблицы лидеров: не больше limit записей начиная с позиции from (с 0)
+    public void forEachLeaderboardEntry(int from, int limit, SizeLeaderboard.PageConsumer consumer) {
+        leaderboard.page(from, limit, consumer);
+    }
+
+    // Чтение для записи на диск (поток сохранения): все записи всегда есть в таблице
+    @Override
+    public Double getResidentSize(UUID uuid) {
+        double size = table.getSize(uuid);
+        return Double.isNaN(size) ? null : size;
+    }
+
+    @Override
+    public String getResidentName(UUID uuid) {
+        return table.getName(uuid);
+    }
+
+    // Сохранение пачки измененных записей (вызывается из потока AsyncSaveManager)
+    boolean writeEntries(Collection<UUID> dirtyEntries) {
+        return storage.save(this, dirtyEntries);
+    }
+
+    public PlayerDataStorage getStorage() {
+        return storage;
+    }
+
+    public AsyncSaveManager getSaveManager() {
+        return saveManager;
+    }
+
+    // Финальный сброс очереди сохранения (вызывается в onDisable)
+    public void shutdown() {
+        saveManager.shutdown();
+        storage.close();
+    }
+
+    // Размер игрока: явно заданный или размер по умолчанию из SizeAllocator (по тиру игрока)
+    public double getPlayerSize(UUID uuid) {
+        Double size = getOverrideSize(uuid);
+        return size != null ? size : allocator.defaultSize(uuid, getTierProfile(uuid));
+    }
+
+    // Явно заданный размер (зелье, /playersize set) или null
+    public Double getOverrideSize(UUID uuid) {
+        double size = table.getSize(uuid);
+        return Double.isNaN(size) ? null : size;
     }
 
-    public Double getPlayerSize(UUID uuid) {
-        return playerSizes.get(uuid);
+    // Размер игрока в мире с этим профилем (world-profiles): заданный размер обрезается
+    // до диапазона профиля, размер по умолчанию берется из распределения профиля
+    public double getProfileSize(UUID uuid, SizeProfile profile) {
+        Double size = getOverrideSize(uuid);
+        return size != null ? profile.clampOverride(size) : allocator.defaultSize(uuid, profile);
     }
 
+    // Задает размер явно (он будет сохранен на диск).
+    // Может вызываться из любого потока. Таблица лидеров обновляется под блокировкой сегмента таблицы
     public void setPlayerSize(UUID uuid, double size) {
-        playerSizes.put(uuid, size);
+        // Размер по умолчанию в таблице лидеров заменяется заданным
+        unlistDefault(uuid);
+        storeSize(uuid, size);
+        invalidateBase(uuid);
+    }
+
+    // Убирает явно заданный размер: игрок возвращается к размеру по умолчанию
+    public void clearPlayerSize(UUID uuid) {
+        storeSize(uuid, Double.NaN);
+        invalidateBase(uuid);
+        listDefault(uuid);
+    }
+
+    private void invalidateBase(UUID uuid) {
+        SizeModifierStack stack = modifierStacks.get(uuid);
+        if (stack != null) {
+            stack.invalidateBase();
+        }
+    }
+
+    // Итоговый размер онлайн игрока в мире с этим профилем: основа и модификаторы.
+    // Пересчитываются только слои, которые изменились. Вызывается из AttributeApplyQueue (основной поток)
+    public double resolveSize(Player player, SizeProfile profile) {
+        UUID uuid = player.getUniqueId();
+        SizeModifierStack stack = modifierStacks.computeIfAbsent(uuid, id -> new SizeModifierStack());
+        return stack.resolve(uuid, profile, this, System.currentTimeMillis(), stackRecomputes);
+    }
+
+    // Добавляет модификатор размера (или заменяет модификатор с тем же именем) и ставит игрока
+    // в очередь применения. Модификаторы не сохраняются на диск и пропадают при выходе игрока.
+    // Вызывается из основного потока
+    public void addModifier(Player player, SizeModifier modifier) {
+        modifierStacks.computeIfAbsent(player.getUniqueId(), id -> new SizeModifierStack()).put(modifier);
+        queueApply(player);
+        if (modifier.expiresAt() != 0) {
+            scheduleExpiry(player, modifier);
+        }
+    }
+
+    // Окончание: модификатор уберется при следующем применении после expiresAt.
+    // Тики не привязаны к часам, поэтому задача может сработать раньше expiresAt -
+    // тогда она ставится заново на оставшееся время, иначе модификатор остался бы до следующего применения
+    private void scheduleExpiry(Player player, SizeModifier modifier) {
+        long delayTicks = Math.max(1L, (modifier.expiresAt() - System.currentTimeMillis() + 49) / 50);
+        Bukkit.getScheduler().runTaskLater(plugin, () -> {
+            if (!player.isOnline()) {
+                return;
+            }
+            if (modifier.isExpired(System.currentTimeMillis())) {
+                queueApply(player);
+            } else {
+                scheduleExpiry(player, modifier);
+            }
+        }, delayTicks);
+    }
+
+    // Убирает модификатор по имени. Возвращает false, если такого модификатора не было
+    public boolean removeModifier(Player player, String key) {
+        SizeModifierStack stack = modifierStacks.get(player.getUniqueId());
+        if (stack == null || !stack.remove(key)) {
+            return false;
+        }
+        queueApply(player);
+        return true;
+    }
+
+    public boolean hasModifiers(UUID uuid) {
+        SizeModifierStack stack = modifierStacks.get(uuid);
+        return stack != null && stack.hasModifiers();
+    }
+
+    // Активные модификаторы игрока (только основной поток)
+    public Collection<SizeModifier> getModifiers(UUID uuid) {
+        SizeModifierStack stack = modifierStacks.get(uuid);
+        return stack != null ? List.copyOf(stack.getModifiers()) : List.of();
+    }
+
+    private void storeSize(UUID uuid, double size) {
+        if (Double.compare(table.putSize(uuid, size, leaderboard::update), size) != 0) {
+            saveManager.markDirty(uuid);
+        }
     }
 
     public String getPlayerName(UUID uuid) {
-        return playerNames.get(uuid);
+        return table.getName(uuid);
     }
 
     public void setPlayerName(UUID uuid, String name) {
-        playerNames.put(uuid, name);
+        String previous = table.putName(uuid, name);
+        indexName(uuid, previous, name);
+        // Ник сохраняется и без заданного размера: по нему находят игрока после перезапуска
+        if (!name.equals(previous)) {
+            saveManager.markDirty(uuid);
+        }
+    }
+
+    // Поиск UUID по нику без учета регистра за O(1).
+    // Если ник переходил от одного игрока к другому, возвращается тот, кто заходил последним
+    public UUID findPlayerByName(String name) {
+        return nameIndex.get(normalizeName(name));
+    }
+
+    private void indexName(UUID uuid, String previous, String name) {
+        // Игрок сменил ник - старый ник больше не указывает на него
+        // (если его уже занял другой игрок, запись другого игрока не трогаем)
+        if (previous != null && !previous.equalsIgnoreCase(name)) {
+            if (nameIndex.remove(normalizeName(previous), uuid) && !loading) {
+                prefixIndex.remove(previous);
+            }
+        }
+        nameIndex.put(normalizeName(name), uuid);
+        if (!loading) {
+            prefixIndex.add(name);
+        }
+    }
+
+    // Автодополнение ников: не больше limit совпадений по префиксу без учета регистра
+    public void completeNames(String prefix, int limit, List<String> out, Predicate<String> skip) {
+        prefixIndex.complete(prefix, limit, out, skip);
+    }
+
+    private static String normalizeName(String name) {
+        return name.toLowerCase(Locale.ROOT);
     }
 
+    // Копия всех размеров. Для обхода лучше использовать forEachOverride
     public Map<UUID, Double> getAllPlayerSizes() {
-        return new HashMap<>(playerSizes);
+        Map<UUID, Double> result = new HashMap<>();
+        forEachOverride(result::put);
+        return result;
     }
 
+    // Копия всех ников
     public Map<UUID, String> getAllPlayerNames() {
-        return new HashMap<>(playerNames);
+        Map<UUID, String> result = new HashMap<>();
+        table.forEachName(result::put);
+        return result;
     }
 
+    public AttributeApplyQueue getApplyQueue() {
+        return applyQueue;
+    }
+
+    // Применение размера и здоровья через очередь (в ближайшем тике).
+    // Размер для мира, в котором находится игрок, определяется в момент применения
+    public void queueApply(Player player) {
+        applyQueue.enqueue(player.getUniqueId(), 0);
+    }
+
+    // Применение не раньше чем через delayTicks тиков (например, после респавна)
+    public void queueApply(Player player, int delayTicks) {
+        applyQueue.enqueue(player.getUniqueId(), delayTicks);
+    }
+
+    // Непосредственная запись атрибутов. Обычно вызывается из AttributeApplyQueue.
+    // Решает живое значение атрибута: если оно уже нужное, запись (и пакет синхронизации клиенту)
+    // пропускается. Запомненное значение - только подсказка: если мы уже ставили это значение,
+    // а атрибут другой, его изменил другой плагин или команда, и значение восстанавливается
     public void applySize(Player player, double size) {
+        AppliedAttributes applied = appliedAttributes.computeIfAbsent(player.getUniqueId(),
+                uuid -> new AppliedAttributes());
+
         try {
             AttributeInstance scaleAttribute = player.getAttribute(Attribute.GENERIC_SCALE);
             if (scaleAttribute != null) {
-                scaleAttribute.setBaseValue(size);
-                plugin.getLogger().info("Размер игрока " + player.getName() + " установлен на " + size);
+                double current = scaleAttribute.getBaseValue();
+                if (current != size) {
+                    if (applied.scale == size) {
+                        externalChangesReverted.incrementAndGet();
+                        plugin.getLogger().info("Размер игрока " + player.getName() + " был изменен извне ("
+                                + current + "), восстанавливаю " + size);
+                    }
+                    scaleAttribute.setBaseValue(size);
+                    attributeWritesPerformed.incrementAndGet();
+                    plugin.getLogger().info("Размер игрока " + player.getName() + " установлен на " + size);
+                } else {
+                    attributeWritesAvoided.incrementAndGet();
+                }
+                applied.scale = size;
             } else {
                 plugin.getLogger().warning("Не удалось получить атрибут SCALE для игрока " + player.getName());
             }
@@ -168,12 +549,15 @@ public class PlayerSizeManager {
         }
     }
 
-    public void applyHealth(Player player, double size) {
-        ConfigManager config = ((PlayerSizePlugin) plugin).getConfigManager();
-
-        if (!config.isReduceHealthForSmallPlayers()) {
+    public void applyHealth(Player player, double size, SizeProfile profile) {
+        double newMaxHealth = maxHealthFor(profile, size);
+        if (Double.isNaN(newMaxHealth)) {
             return;
         }
+        boolean reduced = size <= profile.smallSizeThreshold();
+
+        AppliedAttributes applied = appliedAttributes.computeIfAbsent(player.getUniqueId(),
+                uuid -> new AppliedAttributes());
 
         try {
             AttributeInstance maxHealthAttribute = player.getAttribute(Attribute.GENERIC_MAX_HEALTH);
@@ -182,27 +566,27 @@ public class PlayerSizeManager {
                 return;
             }
 
-            // Если размер игрока <= порога, уменьшаем здоровье
-            if (size <= config.getSmallSizeThreshold()) {
-                // Стандартное здоровье = 20 HP (10 сердец)
-                // Отнимаем указанное количество сердец
-                double newMaxHealth = 20.0 - (config.getHealthReduction() * 2.0); // 1 сердце = 2 HP
-
+            double current = maxHealthAttribute.getBaseValue();
+            if (current != newMaxHealth) {
+                if (applied.maxHealth == newMaxHealth) {
+                    externalChangesReverted.incrementAndGet();
+                    plugin.getLogger().info("Максимальное здоровье игрока " + player.getName()
+                            + " было изменено извне (" + current + "), восстанавливаю " + newMaxHealth);
+                }
                 maxHealthAttribute.setBaseValue(newMaxHealth);
-
-                // Устанавливаем текущее здоровье, если оно больше нового максимума
-                if (player.getHealth() > newMaxHealth) {
-                    player.setHealth(newMaxHealth);
+                attributeWritesPerformed.incrementAndGet();
+                if (reduced) {
+                    plugin.getLogger().info("Здоровье игрока " + player.getName() + " уменьшено до " + newMaxHealth
+                            + " HP (размер: " + size + " <= " + profile.smallSizeThreshold() + ")");
                 }
-
-                plugin.getLogger().info("Здоровье игрока " + player.getName() + " уменьшено до " + newMaxHealth
-                        + " HP (размер: " + size + " <= " + config.getSmallSizeThreshold() + ")");
             } else {
-                // Восстанавливаем стандартное здоровье, если размер больше порога
-                maxHealthAttribute.setBaseValue(20.0);
-                if (player.getHealth() > 20.0) {
-                    player.setHealth(20.0);
-                }
+                attributeWritesAvoided.incrementAndGet();
+            }
+            applied.maxHealth = newMaxHealth;
+
+            // Устанавливаем текущее здоровье, если оно больше нового максимума
+            if (player.getHealth() > newMaxHealth) {
+                player.setHealth(newMaxHealth);
             }
         } catch (Exception e) {
             plugin.getLogger()
@@ -211,9 +595,46 @@ public class PlayerSizeManager {
         }
     }
 
-    // Класс для хранения данных игрока в JSON
-    private static class PlayerSizeEntry {
-        public Double size;
-        public String name;
+    // Максимальное здоровье игрока с таким размером по настройкам профиля.
+    // NaN - плагин не управляет здоровьем (reduce-health-for-small-players: false)
+    public static double maxHealthFor(SizeProfile profile, double size) {
+        if (!profile.reduceHealthForSmallPlayers()) {
+            return Double.NaN;
+        }
+        // Если размер игрока <= порога, уменьшаем здоровье
+        // Стандартное здоровье = 20 HP (10 сердец), отнимаем указанное количество сердец (1 сердце = 2 HP)
+        return size <= profile.smallSizeThreshold() ? 20.0 - (profile.healthReduction() * 2.0) : 20.0;
+    }
+
+    // Сервер мог сбросить атрибуты (респавн, смена мира, смерть, выход) - расхождение с живым значением
+    // после этого не считается изменением извне
+    public void invalidateAppliedAttributes(UUID uuid) {
+        appliedAttributes.remove(uuid);
+    }
+
+    public long getAttributeWritesPerformed() {
+        return attributeWritesPerformed.get();
+    }
+
+    public long getAttributeWritesAvoided() {
+        return attributeWritesAvoided.get();
+    }
+
+    public long getExternalChangesReverted() {
+        return externalChangesReverted.get();
+    }
+
+    public long getBaseRecomputes() {
+        return stackRecomputes[0];
+    }
+
+    public long getModifierRecomputes() {
+        return stackRecomputes[1];
+    }
+
+    // Последние записанные значения атрибутов игрока (NaN - неизвестно)
+    private static final class AppliedAttributes {
+        double scale = Double.NaN;
+        double maxHealth = Double.NaN;
     }
 }
@@ -7,16 +7,21 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExecutor, TabCompleter {
 
@@ -24,39 +29,63 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
     private PlayerSizeManager playerSizeManager;
     private SizePotionManager potionManager;
     private CraftManager craftManager;
-    private Random random;
+    private BatchJobRunner batchJobRunner;
+    private ParticleEffectEngine particleEngine;
+    private ConfigWatcher configWatcher;
+    // Игроки, чьи записи уже загружены при AsyncPlayerPreLoginEvent, ждут PlayerJoinEvent:
+    // UUID -> ник и момент подготовки. Вход может быть отклонен позже (PlayerLoginEvent) или оборван,
+    // поэтому старые записи не считаются подготовленными и удаляются
+    private final Map<UUID, PreparedJoin> preparedJoins = new ConcurrentHashMap<>();
+    private static final long PREPARED_JOIN_TTL_MS = 60_000;
+
+    // Максимум подсказок ников в автодополнении
+    private static final int TAB_COMPLETE_LIMIT = 50;
+
+    // Пересчет размеров по умолчанию после смены настроек размеров (BatchJobRunner)
+    private static final String REFRESH_DEFAULTS_JOB = "refresh defaults";
+    private boolean refreshDefaultsAgain;
 
     @Override
     public void onEnable() {
-        // Инициализация
-        random = new Random();
-
         // Инициализация менеджеров
         configManager = new ConfigManager(this);
         playerSizeManager = new PlayerSizeManager(this);
         potionManager = new SizePotionManager(this);
         craftManager = new CraftManager(this);
+        batchJobRunner = new BatchJobRunner(this);
+        particleEngine = new ParticleEffectEngine(this);
 
         // Загрузка данных игроков
         playerSizeManager.loadPlayerSizes();
+        playerSizeManager.getApplyQueue().start();
 
         // Регистрация событий
         getServer().getPluginManager().registerEvents(this, this);
         getServer().getPluginManager().registerEvents(potionManager, this);
-        getServer().getPluginManager().registerEvents(craftManager, this);
+        // События крафта CraftManager регистрирует сам в зависимости от potion.native-recipe
 
         // Регистрация команды
         getCommand("playersize").setExecutor(this);
         getCommand("playersize").setTabCompleter(this);
 
+        // Слежение за config.yml (auto-reload.enabled)
+        configWatcher = new ConfigWatcher(this);
+        updateConfigWatcher();
+
         getLogger().info("Плагин PlayerSize успешно загружен!");
     }
 
     @Override
     public void onDisable() {
-        // Сохранение данных при выключении
+        if (configWatcher != null) {
+            configWatcher.stop();
+        }
+        if (craftManager != null) {
+            craftManager.unregisterRecipe();
+        }
+        // Дожидаемся сохранения очереди изменений (не дольше storage.shutdown-timeout-ms)
         if (playerSizeManager != null) {
-            playerSizeManager.savePlayerSizes();
+            playerSizeManager.shutdown();
         }
         getLogger().info("Плагин PlayerSize выключен!");
     }
@@ -74,51 +103,86 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return potionManager;
     }
 
-    public Random getRandom() {
-        return random;
+    public BatchJobRunner getBatchJobRunner() {
+        return batchJobRunner;
+    }
+
+    public ParticleEffectEngine getParticleEngine() {
+        return particleEngine;
     }
 
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
 
-        // Проверяем, есть ли уже сохраненный размер для игрока
-        Double savedSize = playerSizeManager.getPlayerSize(uuid);
-
-        if (savedSize == null) {
-            // Генерируем новый размер
-            if (configManager.isUseRandomSize()) {
-                double newSize = configManager.getMinSize()
-                        + (configManager.getMaxSize() - configManager.getMinSize()) * random.nextDouble();
-                // Округляем до 2 знаков после запятой
-                savedSize = Math.round(newSize * 100.0) / 100.0;
-            } else {
-                savedSize = configManager.getDefaultSize();
-            }
+        // Запись игрока уже загружена при предварительном входе
+        PreparedJoin prepared = preparedJoins.remove(uuid);
+        if (prepared == null || !prepared.matches(player.getName(), System.currentTimeMillis())) {
+            // Предварительный вход не прошел через плагин (например, плагин загрузили во время работы сервера)
+            // или остался от другой, отклоненной попытки входа
+            prepareJoin(uuid, player.getName());
+        }
 
-            // Сохраняем размер и ник
-            playerSizeManager.setPlayerSize(uuid, savedSize);
-            playerSizeManager.setPlayerName(uuid, player.getName());
-            playerSizeManager.savePlayerSizes();
+        // Права проверяются один раз при входе, дальше тир берется из кэша
+        playerSizeManager.refreshTier(player);
 
-            getLogger().info("Новый размер для игрока " + player.getName() + ": " + savedSize);
-        }
+        // Размер по умолчанию попадает в таблицу лидеров
+        playerSizeManager.playerJoined(uuid);
 
-        // Обновляем ник игрока (на случай если он изменился)
-        playerSizeManager.setPlayerName(uuid, player.getName());
+        playerSizeManager.queueApply(player);
+    }
 
-        // Создаем финальную переменную для использования во внутреннем классе
-        final Double finalSize = savedSize;
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        playerSizeManager.invalidateAppliedAttributes(uuid);
+        playerSizeManager.playerQuit(uuid);
+    }
 
-        // Применяем размер игроку (с небольшой задержкой для надежности)
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                playerSizeManager.applySize(player, finalSize);
-                playerSizeManager.applyHealth(player, finalSize);
-            }
-        }.runTaskLater(this, 5L); // Задержка 5 тиков (0.25 секунды)
+    // Сервер может пересоздать сущность игрока - запомненные значения атрибутов больше не верны
+    @EventHandler
+    public void onPlayerDeath(PlayerDeathEvent event) {
+        playerSizeManager.invalidateAppliedAttributes(event.getEntity().getUniqueId());
+    }
+
+    // В новом мире может действовать другой профиль (world-profiles) - размер и здоровье
+    // применяются заново через общую очередь
+    @EventHandler
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        Player player = event.getPlayer();
+        playerSizeManager.invalidateAppliedAttributes(player.getUniqueId());
+        playerSizeManager.queueApply(player);
+    }
+
+    // Выполняется в асинхронном потоке до входа игрока: загрузка записи с диска
+    // и обновление ника не занимают основной поток
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        prepareJoin(event.getUniqueId(), event.getName());
+        long now = System.currentTimeMillis();
+        // Попытки входа, которые так и не дошли до PlayerJoinEvent (обрыв соединения)
+        preparedJoins.values().removeIf(prepared -> !prepared.isFresh(now));
+        preparedJoins.put(event.getUniqueId(), new PreparedJoin(event.getName(), now));
+    }
+
+    // Другой плагин отклонил вход после предварительной загрузки (бан, белый список, сервер полон)
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            preparedJoins.remove(event.getPlayer().getUniqueId());
+        }
+    }
+
+    // Загружает запись игрока в память и обновляет ник (на случай если он изменился).
+    // Размер по умолчанию вычисляется из UUID, поэтому новому игроку сохранять на диск нечего
+    private void prepareJoin(UUID uuid, String name) {
+        playerSizeManager.getOverrideSize(uuid);
+        playerSizeManager.setPlayerName(uuid, name);
     }
 
     @EventHandler
@@ -126,17 +190,10 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
 
-        final Double savedSize = playerSizeManager.getPlayerSize(uuid);
-        if (savedSize != null) {
-            // Применяем размер после респавна
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    playerSizeManager.applySize(player, savedSize);
-                    playerSizeManager.applyHealth(player, savedSize);
-                }
-            }.runTaskLater(this, 5L);
-        }
+        playerSizeManager.invalidateAppliedAttributes(uuid);
+
+        // Применяем размер после респавна (с небольшой задержкой для надежности)
+        playerSizeManager.queueApply(player, 5); // Задержка 5 тиков (0.25 секунды)
     }
 
     @Override
@@ -159,8 +216,14 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
                 return handleCheck(sender, args);
             case "list":
                 return handleList(sender, args);
+            case "rank":
+                return handleRank(sender, args);
             case "give":
                 return handleGive(sender, args);
+            case "stats":
+                return handleStats(sender);
+            case "tier":
+                return handleTier(sender, args);
             default:
                 sendHelp(sender);
                 return true;
@@ -174,7 +237,10 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         sender.sendMessage("§e/playersize reset <игрок|all> §7- Сбросить размер (только админы)");
         sender.sendMessage("§e/playersize check <игрок> §7- Показать размер игрока");
         sender.sendMessage("§e/playersize list [страница] §7- Список игроков по росту");
+        sender.sendMessage("§e/playersize rank <игрок> §7- Место игрока в списке по росту");
         sender.sendMessage("§e/playersize give potion <количество> §7- Выдать зелье роста (только админы)");
+        sender.sendMessage("§e/playersize stats §7- Статистика работы плагина (только админы)");
+        sender.sendMessage("§e/playersize tier <игрок|all> §7- Заново проверить тир прав (только админы)");
         sender.sendMessage("§6================================");
     }
 
@@ -185,16 +251,11 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         }
 
         try {
+            ConfigSnapshot previous = configManager.getSnapshot();
             configManager.loadConfig();
-            craftManager.loadRecipe(); // Перезагружаем рецепт зелья
-            // Применяем здоровье всем онлайн игрокам после перезагрузки конфига
-            for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
-                Double size = playerSizeManager.getPlayerSize(onlinePlayer.getUniqueId());
-                if (size != null) {
-                    playerSizeManager.applyHealth(onlinePlayer, size);
-                }
-            }
+            int reapplied = onConfigReloaded(previous);
             sender.sendMessage("§a[PlayerSize] Конфигурация успешно перезагружена!");
+            sender.sendMessage("§7Размер и здоровье обновятся у игроков: §e" + reapplied);
             getLogger().info("Конфигурация перезагружена администратором: " + sender.getName());
         } catch (Exception e) {
             sender.sendMessage("§c[PlayerSize] Ошибка при перезагрузке конфигурации: " + e.getMessage());
@@ -204,6 +265,102 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return true;
     }
 
+    // Применяет новый снимок конфига. Вызывается из основного потока после /playersize reload
+    // и после автоматической перезагрузки. Пересобирается только то, что затронули изменения.
+    // Возвращает, скольким игрокам поставлено в очередь новое применение размера и здоровья
+    public int onConfigReloaded(ConfigSnapshot previous) {
+        ConfigSnapshot current = configManager.getSnapshot();
+        ConfigDelta delta = ConfigDelta.between(previous, current);
+
+        if (delta.isSizesChanged()) {
+            // Размеры по умолчанию в таблице лидеров пересчитываются, заданные размеры не меняются
+            refreshDefaults();
+        }
+        if (delta.isPotionItemChanged()) {
+            potionManager.reload(); // Пересобираем зелье по новому конфигу
+        }
+        if (delta.isRecipeChanged()) {
+            craftManager.loadRecipe(); // Перезагружаем рецепт зелья
+        }
+
+        // Применяем размер и здоровье только тем, у кого они изменились (через очередь, по частям)
+        int queued = 0;
+        if (delta.isSizesChanged() || delta.isHealthChanged() || delta.isTiersChanged()) {
+            for (Player onlinePlayer : Bukkit.getOnlinePlayers()) {
+                UUID uuid = onlinePlayer.getUniqueId();
+                String world = onlinePlayer.getWorld().getName();
+                SizeProfile before = previous.profileFor(world, playerSizeManager.getTierProfile(uuid, previous));
+                if (delta.isTiersChanged()) {
+                    // Тиры в конфиге изменились - права проверяются заново
+                    playerSizeManager.refreshTier(onlinePlayer);
+                }
+                SizeProfile after = current.profileFor(world, playerSizeManager.getTierProfile(uuid, current));
+                if (outcomeChanged(uuid, before, after)) {
+                    playerSizeManager.queueApply(onlinePlayer);
+                    queued++;
+                }
+            }
+        }
+
+        updateConfigWatcher();
+        getLogger().info("Перезагрузка конфига: изменено " + delta.describe() + ", обновление у игроков: " + queued);
+        return queued;
+    }
+
+    // Онлайн игроки пересчитываются сразу, остальные - массовой операцией по частям (размеры по умолчанию
+    // не сохраняются на диск, меняется только таблица лидеров). Если прошлый пересчет еще идет, новый
+    // запускается после него: уже пересчитанные им игроки получили старые настройки
+    private void refreshDefaults() {
+        java.util.List<UUID> offline = playerSizeManager.refreshOnlineDefaults();
+        boolean started = batchJobRunner.submit(REFRESH_DEFAULTS_JOB, Bukkit.getConsoleSender(), offline,
+                playerSizeManager::relistDefault, () -> {
+                    if (refreshDefaultsAgain) {
+                        refreshDefaultsAgain = false;
+                        refreshDefaults();
+                    }
+                });
+        if (!started) {
+            refreshDefaultsAgain = true;
+        }
+    }
+
+    // Размер или здоровье игрока в его мире стали другими. Если плагин перестал управлять здоровьем,
+    // применять нечего: текущее значение остается как есть
+    private boolean outcomeChanged(UUID uuid, SizeProfile before, SizeProfile after) {
+        double oldSize = playerSizeManager.getProfileSize(uuid, before);
+        double newSize = playerSizeManager.getProfileSize(uuid, after);
+        if (Double.compare(oldSize, newSize) != 0) {
+            return true;
+        }
+        // Итог с модификаторами обрезается до диапазона профиля, а здоровье считается по этому итогу:
+        // при любом изменении размеров или здоровья профиля его проще применить заново
+        if (playerSizeManager.hasModifiers(uuid) && (!before.sameSizes(after) || !before.sameHealth(after))) {
+            return true;
+        }
+        double newHealth = PlayerSizeManager.maxHealthFor(after, newSize);
+        return !Double.isNaN(newHealth)
+                && Double.compare(PlayerSizeManager.maxHealthFor(before, oldSize), newHealth) != 0;
+    }
+
+    // Для других плагинов: права игрока изменились (например, после смены группы в плагине прав).
+    // Тир определяется заново, при изменении размер и здоровье применяются через очередь.
+    // Вызывается из основного потока
+    public boolean refreshPermissionTier(Player player) {
+        if (!playerSizeManager.refreshTier(player)) {
+            return false;
+        }
+        playerSizeManager.queueApply(player);
+        return true;
+    }
+
+    private void updateConfigWatcher() {
+        if (configManager.isAutoReloadEnabled()) {
+            configWatcher.start();
+        } else {
+            configWatcher.stop();
+        }
+    }
+
     private boolean handleSet(CommandSender sender, String[] args) {
         if (!sender.hasPermission("playersize.admin") && !sender.isOp()) {
             sender.sendMessage("§cУ вас нет прав для использования этой команды!");
@@ -238,15 +395,16 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
                 sender.sendMessage("§c[PlayerSize] Размер должен быть от 0.1 до 5.0!");
                 return true;
             }
+            size = roundToStorage(sender, size);
 
             UUID uuid = target.getUniqueId();
             playerSizeManager.setPlayerSize(uuid, size);
             playerSizeManager.setPlayerName(uuid, target.getName());
-            playerSizeManager.savePlayerSizes();
+            // Временный размер от зелья иначе перекрыл бы заданный администратором
+            playerSizeManager.removeModifier(target, SizePotionManager.POTION_MODIFIER);
 
             // Применяем размер и здоровье
-            playerSizeManager.applySize(target, size);
-            playerSizeManager.applyHealth(target, size);
+            playerSizeManager.queueApply(target);
 
             // Визуальные эффекты
             potionManager.spawnPotionEffects(target);
@@ -263,6 +421,17 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return true;
     }
 
+    // Формат хранения может сохранять размер с ограниченной точностью (binary - до 0.0001).
+    // Округляем заранее, чтобы в памяти и на диске было одно и то же значение
+    private double roundToStorage(CommandSender sender, double size) {
+        double stored = playerSizeManager.getStorage().storedSize(size);
+        if (stored != size) {
+            sender.sendMessage("§7[PlayerSize] Формат хранения сохраняет размер с точностью до 0.0001: §e"
+                    + size + " §7-> §e" + stored);
+        }
+        return stored;
+    }
+
     private boolean setOfflinePlayerSize(CommandSender sender, UUID uuid, String playerName, String sizeStr) {
         try {
             double size = Double.parseDouble(sizeStr);
@@ -271,10 +440,10 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
                 sender.sendMessage("§c[PlayerSize] Размер должен быть от 0.1 до 5.0!");
                 return true;
             }
+            size = roundToStorage(sender, size);
 
             playerSizeManager.setPlayerSize(uuid, size);
             playerSizeManager.setPlayerName(uuid, playerName);
-            playerSizeManager.savePlayerSizes();
 
             sender.sendMessage("§a[PlayerSize] Размер игрока §e" + playerName + " §aустановлен на §e" + size);
             sender.sendMessage("§7Размер будет применен при следующем входе игрока на сервер.");
@@ -318,23 +487,14 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
 
         UUID uuid = target.getUniqueId();
 
-        // Генерируем новый размер или используем дефолтный
-        double newSize;
-        if (configManager.isUseRandomSize()) {
-            newSize = configManager.getMinSize()
-                    + (configManager.getMaxSize() - configManager.getMinSize()) * random.nextDouble();
-            newSize = Math.round(newSize * 100.0) / 100.0;
-        } else {
-            newSize = configManager.getDefaultSize();
-        }
-
-        playerSizeManager.setPlayerSize(uuid, newSize);
+        // Убираем заданный размер - игрок возвращается к своему размеру по умолчанию
         playerSizeManager.setPlayerName(uuid, target.getName());
-        playerSizeManager.savePlayerSizes();
+        playerSizeManager.clearPlayerSize(uuid);
+        playerSizeManager.removeModifier(target, SizePotionManager.POTION_MODIFIER);
+        double newSize = playerSizeManager.getPlayerSize(uuid);
 
         // Применяем новый размер и здоровье
-        playerSizeManager.applySize(target, newSize);
-        playerSizeManager.applyHealth(target, newSize);
+        playerSizeManager.queueApply(target);
 
         // Визуальные эффекты
         potionManager.spawnPotionEffects(target);
@@ -349,78 +509,55 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
     }
 
     private boolean resetAllPlayers(CommandSender sender) {
-        Map<UUID, Double> allSizes = playerSizeManager.getAllPlayerSizes();
-        if (allSizes.isEmpty()) {
-            sender.sendMessage("§c[PlayerSize] Нет сохраненных размеров игроков для сброса.");
+        if (batchJobRunner.isRunning("reset all")) {
+            sender.sendMessage("§c[PlayerSize] Сброс всех игроков уже выполняется.");
             return true;
         }
 
-        int onlineCount = 0;
+        // Новое зерно: размеры по умолчанию меняются у всех игроков сразу, без записи на диск
+        playerSizeManager.rerollDefaults();
 
-        // Создаем копию списка UUID для безопасной итерации
-        java.util.List<UUID> uuids = new java.util.ArrayList<>(allSizes.keySet());
+        // Собираем список UUID с заданными размерами (таблица меняется во время сброса).
+        // Ники не нужны, поэтому в режиме кэша обход не обращается к диску
+        java.util.List<UUID> uuids = new java.util.ArrayList<>();
+        playerSizeManager.forEachOverride((uuid, size) -> uuids.add(uuid));
+        int overrides = uuids.size();
+        // Размеры по умолчанию в таблице лидеров пересчитываются по новому зерну в той же операции
+        uuids.addAll(playerSizeManager.getListedDefaults());
 
-        for (UUID uuid : uuids) {
-            // Генерируем новый размер или используем дефолтный
-            double newSize;
-            if (configManager.isUseRandomSize()) {
-                newSize = configManager.getMinSize()
-                        + (configManager.getMaxSize() - configManager.getMinSize()) * random.nextDouble();
-                newSize = Math.round(newSize * 100.0) / 100.0;
-            } else {
-                newSize = configManager.getDefaultSize();
-            }
+        sender.sendMessage("§7[PlayerSize] Новое зерно размеров, сброс заданных размеров §e" + overrides
+                + " §7игроков...");
 
-            playerSizeManager.setPlayerSize(uuid, newSize);
-
-            // Обновляем ник, если игрок онлайн
-            Player player = Bukkit.getPlayer(uuid);
-            if (player != null) {
-                playerSizeManager.setPlayerName(uuid, player.getName());
-                onlineCount++;
-
-                // Применяем новый размер и здоровье онлайн игрокам
-                playerSizeManager.applySize(player, newSize);
-                playerSizeManager.applyHealth(player, newSize);
+        // Заданные размеры убираются по частям за несколько тиков, сохранение - один раз в конце
+        batchJobRunner.submit("reset all", sender, uuids, uuid -> {
+            if (!playerSizeManager.relistDefault(uuid)) {
+                playerSizeManager.clearPlayerSize(uuid);
             }
-        }
-
-        // Сохраняем изменения
-        playerSizeManager.savePlayerSizes();
-
-        sender.sendMessage("§a[PlayerSize] Размеры всех игроков сброшены!");
-        sender.sendMessage("§7Всего игроков: §e" + allSizes.size() + " §7(Онлайн: §e" + onlineCount + "§7)");
-
-        // Уведомляем онлайн игроков
-        for (UUID uuid : uuids) {
-            Player player = Bukkit.getPlayer(uuid);
-            if (player != null) {
-                Double newSize = playerSizeManager.getPlayerSize(uuid);
-                if (newSize != null) {
-                    player.sendMessage("§a[PlayerSize] Ваш размер был сброшен и установлен на §e" + newSize);
-                }
+        }, () -> {
+            // Применяем новые размеры и здоровье онлайн игрокам и уведомляем их
+            int onlineCount = 0;
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                double newSize = playerSizeManager.getPlayerSize(player.getUniqueId());
+                playerSizeManager.removeModifier(player, SizePotionManager.POTION_MODIFIER);
+                playerSizeManager.queueApply(player);
+                player.sendMessage("§a[PlayerSize] Ваш размер был сброшен и установлен на §e" + newSize);
+                onlineCount++;
             }
-        }
 
-        getLogger().info(
-                "Размеры всех игроков сброшены администратором " + sender.getName() + ". Всего: " + allSizes.size());
+            sender.sendMessage("§a[PlayerSize] Размеры всех игроков сброшены!");
+            sender.sendMessage("§7Сброшено заданных размеров: §e" + overrides + " §7(Онлайн игроков: §e"
+                    + onlineCount + "§7)");
+            getLogger().info("Размеры всех игроков сброшены администратором " + sender.getName()
+                    + ". Сброшено заданных размеров: " + overrides);
+        });
 
         return true;
     }
 
     private boolean resetOfflinePlayerSize(CommandSender sender, UUID uuid, String playerName) {
-        double newSize;
-        if (configManager.isUseRandomSize()) {
-            newSize = configManager.getMinSize()
-                    + (configManager.getMaxSize() - configManager.getMinSize()) * random.nextDouble();
-            newSize = Math.round(newSize * 100.0) / 100.0;
-        } else {
-            newSize = configManager.getDefaultSize();
-        }
-
-        playerSizeManager.setPlayerSize(uuid, newSize);
         playerSizeManager.setPlayerName(uuid, playerName);
-        playerSizeManager.savePlayerSizes();
+        playerSizeManager.clearPlayerSize(uuid);
+        double newSize = playerSizeManager.getPlayerSize(uuid);
 
         sender.sendMessage("§a[PlayerSize] Размер игрока §e" + playerName + " §aсброшен и установлен на §e" + newSize);
         sender.sendMessage("§7Размер будет применен при следующем входе игрока на сервер.");
@@ -446,14 +583,27 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
 
         if (target != null) {
             UUID uuid = target.getUniqueId();
-            Double size = playerSizeManager.getPlayerSize(uuid);
-
-            if (size != null) {
-                sender.sendMessage("§6[PlayerSize] §7Игрок: §e" + target.getName());
-                sender.sendMessage("§6[PlayerSize] §7Рост: §e" + String.format("%.2f", size * 1.8) + " блока");
-                sender.sendMessage("§6[PlayerSize] §7Размер: §e" + size);
-            } else {
-                sender.sendMessage("§c[PlayerSize] У игрока §e" + target.getName() + " §cеще не установлен размер.");
+            // Действующий размер: профиль мира и тир игрока, поверх - модификаторы
+            ConfigSnapshot config = configManager.getSnapshot();
+            SizeProfile profile = config.profileFor(target.getWorld().getName(),
+                    playerSizeManager.getTierProfile(uuid, config));
+            double size = playerSizeManager.resolveSize(target, profile);
+            double stored = playerSizeManager.getPlayerSize(uuid);
+
+            sender.sendMessage("§6[PlayerSize] §7Игрок: §e" + target.getName());
+            sender.sendMessage("§6[PlayerSize] §7Рост: §e" + String.format("%.2f", size * 1.8) + " блока");
+            sender.sendMessage("§6[PlayerSize] §7Размер: §e" + size);
+            if (Double.compare(size, stored) != 0) {
+                // Профиль мира или модификаторы меняют сохраненный размер
+                sender.sendMessage("§6[PlayerSize] §7Сохраненный размер: §e" + stored);
+            }
+            // Модификаторы поверх размера (временное зелье, другие плагины)
+            long now = System.currentTimeMillis();
+            for (SizeModifier modifier : playerSizeManager.getModifiers(uuid)) {
+                String left = modifier.expiresAt() != 0
+                        ? " §7(еще §e" + Math.max(0, (modifier.expiresAt() - now) / 1000) + " §7сек.)" : "";
+                sender.sendMessage("§6[PlayerSize] §7Модификатор §e" + modifier.key() + "§7: §e"
+                        + modifier.operation().name().toLowerCase() + " " + modifier.value() + left);
             }
         } else {
             UUID targetUuid = findPlayerUUID(targetName);
@@ -462,16 +612,13 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
                 return true;
             }
 
-            Double size = playerSizeManager.getPlayerSize(targetUuid);
+            // Игрок оффлайн: мир неизвестен, показываем сохраненный размер
+            double size = playerSizeManager.getPlayerSize(targetUuid);
             String name = playerSizeManager.getPlayerName(targetUuid);
 
-            if (size != null) {
-                sender.sendMessage("§6[PlayerSize] §7Игрок: §e" + (name != null ? name : targetName));
-                sender.sendMessage("§6[PlayerSize] §7Рост: §e" + String.format("%.2f", size * 1.8) + " блока");
-                sender.sendMessage("§6[PlayerSize] §7Размер: §e" + size);
-            } else {
-                sender.sendMessage("§c[PlayerSize] У игрока §e" + targetName + " §cеще не установлен размер.");
-            }
+            sender.sendMessage("§6[PlayerSize] §7Игрок: §e" + (name != null ? name : targetName));
+            sender.sendMessage("§6[PlayerSize] §7Рост: §e" + String.format("%.2f", size * 1.8) + " блока");
+            sender.sendMessage("§6[PlayerSize] §7Размер: §e" + size);
         }
         return true;
     }
@@ -482,8 +629,7 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             return true;
         }
 
-        Map<UUID, Double> allSizes = playerSizeManager.getAllPlayerSizes();
-        if (allSizes.isEmpty()) {
+        if (playerSizeManager.getPlayerCount() == 0) {
             sender.sendMessage("§c[PlayerSize] Нет сохраненных размеров игроков.");
             return true;
         }
@@ -502,31 +648,10 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             }
         }
 
-        // Создаем список записей с ростом в блоках и сортируем от высокого к низкому
-        java.util.List<PlayerListEntry> entries = new java.util.ArrayList<>();
-        Map<UUID, String> allNames = playerSizeManager.getAllPlayerNames();
-        for (Map.Entry<UUID, Double> entry : allSizes.entrySet()) {
-            UUID uuid = entry.getKey();
-            Double size = entry.getValue();
-            String name = allNames.get(uuid);
-            double height = size * 1.8; // Рост в блоках
-
-            Player onlinePlayer = Bukkit.getPlayer(uuid);
-            boolean isOnline = onlinePlayer != null;
-
-            entries.add(new PlayerListEntry(
-                    name != null ? name : uuid.toString(),
-                    size,
-                    height,
-                    isOnline));
-        }
-
-        // Сортируем от высокого к низкому
-        entries.sort((a, b) -> Double.compare(b.height, a.height));
-
         // Настройки пагинации
         int itemsPerPage = 15;
-        int totalPages = (int) Math.ceil((double) entries.size() / itemsPerPage);
+        int totalPlayers = playerSizeManager.getPlayerCount();
+        int totalPages = (int) Math.ceil((double) totalPlayers / itemsPerPage);
 
         if (page > totalPages) {
             sender.sendMessage(
@@ -534,21 +659,21 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             return true;
         }
 
-        // Вычисляем диапазон для текущей страницы
-        int startIndex = (page - 1) * itemsPerPage;
-        int endIndex = Math.min(startIndex + itemsPerPage, entries.size());
-
         // Выводим заголовок
         sender.sendMessage("§6========== [PlayerSize] Список игроков ==========");
         sender.sendMessage(
-                "§7Страница §e" + page + " §7из §e" + totalPages + " §7(Всего игроков: §e" + entries.size() + "§7)");
+                "§7Страница §e" + page + " §7из §e" + totalPages + " §7(Всего игроков: §e" + totalPlayers + "§7)");
         sender.sendMessage("");
 
-        // Выводим записи текущей страницы
-        for (int i = startIndex; i < endIndex; i++) {
-            PlayerListEntry entry = entries.get(i);
-            String heightStr = String.format("%.2f", entry.height);
-            sender.sendMessage("§e" + entry.name + " §7- Рост: §e" + heightStr + " блока");
+        // Берем из таблицы лидеров только записи текущей страницы (уже отсортированы от высокого к низкому)
+        java.util.List<String> lines = new java.util.ArrayList<>(itemsPerPage);
+        playerSizeManager.forEachLeaderboardEntry((page - 1) * itemsPerPage, itemsPerPage, (position, uuid, size) -> {
+            String name = playerSizeManager.getPlayerName(uuid);
+            String heightStr = String.format("%.2f", size * 1.8); // Рост в блоках
+            lines.add("§e" + (name != null ? name : uuid.toString()) + " §7- Рост: §e" + heightStr + " блока");
+        });
+        for (String line : lines) {
+            sender.sendMessage(line);
         }
 
         sender.sendMessage("");
@@ -562,19 +687,40 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return true;
     }
 
-    // Вспомогательный класс для сортировки списка
-    private static class PlayerListEntry {
-        String name;
-        double size;
-        double height;
-        boolean isOnline;
+    private boolean handleRank(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("playersize.list")) {
+            sender.sendMessage("§cУ вас нет прав для использования этой команды!");
+            return true;
+        }
+
+        if (args.length < 2) {
+            sender.sendMessage("§c[PlayerSize] Использование: §e/playersize rank <игрок>");
+            return true;
+        }
+
+        String targetName = args[1];
+        UUID targetUuid = findPlayerUUID(targetName);
+        if (targetUuid == null) {
+            sender.sendMessage("§c[PlayerSize] Игрок §e" + targetName + " §cне найден!");
+            return true;
+        }
 
-        PlayerListEntry(String name, double size, double height, boolean isOnline) {
-            this.name = name;
-            this.size = size;
-            this.height = height;
-            this.isOnline = isOnline;
+        String name = playerSizeManager.getPlayerName(targetUuid);
+        if (name == null) {
+            name = targetName;
         }
+
+        double size = playerSizeManager.getPlayerSize(targetUuid);
+        int rank = playerSizeManager.getPlayerRank(targetUuid);
+        if (rank < 0) {
+            sender.sendMessage("§c[PlayerSize] Игрока §e" + name + " §cнет в таблице лидеров.");
+            return true;
+        }
+
+        sender.sendMessage("§6[PlayerSize] §7Игрок §e" + name + " §7на §e" + rank + " §7месте из §e"
+                + playerSizeManager.getPlayerCount() + " §7(рост: §e" + String.format("%.2f", size * 1.8)
+                + " §7блока)");
+        return true;
     }
 
     private boolean handleGive(CommandSender sender, String[] args) {
@@ -640,15 +786,13 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             return true;
         }
 
-        // Создаем зелья и выдаем их
+        // Создаем зелья (копии прототипа) и выдаем их, не поместившиеся выкидываем на землю
+        ItemStack[] potions = new ItemStack[amount];
         for (int i = 0; i < amount; i++) {
-            ItemStack potion = potionManager.createSizePotion();
-            if (targetPlayer.getInventory().firstEmpty() == -1) {
-                // Инвентарь полон, выкидываем на землю
-                targetPlayer.getWorld().dropItemNaturally(targetPlayer.getLocation(), potion);
-            } else {
-                targetPlayer.getInventory().addItem(potion);
-            }
+            potions[i] = potionManager.createSizePotion();
+        }
+        for (ItemStack overflow : targetPlayer.getInventory().addItem(potions).values()) {
+            targetPlayer.getWorld().dropItemNaturally(targetPlayer.getLocation(), overflow);
         }
 
         // Сообщения
@@ -667,13 +811,90 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return true;
     }
 
-    private UUID findPlayerUUID(String name) {
-        // Сначала ищем по нику в сохраненных данных
-        Map<UUID, String> allNames = playerSizeManager.getAllPlayerNames();
-        for (Map.Entry<UUID, String> entry : allNames.entrySet()) {
-            if (entry.getValue().equalsIgnoreCase(name)) {
-                return entry.getKey();
+    private boolean handleTier(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("playersize.admin") && !sender.isOp()) {
+            sender.sendMessage("§cУ вас нет прав для использования этой команды!");
+            return true;
+        }
+
+        if (args.length < 2) {
+            sender.sendMessage("§c[PlayerSize] Использование: §e/playersize tier <игрок|all>");
+            return true;
+        }
+
+        if (args[1].equalsIgnoreCase("all")) {
+            int changed = 0;
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                if (refreshPermissionTier(player)) {
+                    changed++;
+                }
             }
+            sender.sendMessage("§a[PlayerSize] Тиры онлайн игроков проверены заново. Изменился тир у игроков: §e"
+                    + changed);
+            return true;
+        }
+
+        Player target = Bukkit.getPlayer(args[1]);
+        if (target == null) {
+            sender.sendMessage("§c[PlayerSize] Игрок §e" + args[1]
+                    + " §cне в сети! Тир определяется только у онлайн игроков.");
+            return true;
+        }
+
+        boolean changed = refreshPermissionTier(target);
+        SizeProfile tier = playerSizeManager.getTierProfile(target.getUniqueId());
+        String tierName = tier == configManager.getSnapshot().globalProfile() ? "общие настройки" : tier.name();
+        sender.sendMessage("§a[PlayerSize] Тир игрока §e" + target.getName() + "§a: §e" + tierName
+                + (changed ? " §7(изменился, размер будет применен заново)" : ""));
+        sender.sendMessage("§7Диапазон размеров: §e" + tier.minSize() + " - " + tier.maxSize());
+        return true;
+    }
+
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("playersize.admin") && !sender.isOp()) {
+            sender.sendMessage("§cУ вас нет прав для использования этой команды!");
+            return true;
+        }
+
+        AsyncSaveManager saveManager = playerSizeManager.getSaveManager();
+        long secondsAgo = (System.currentTimeMillis() - saveManager.getLastFlushAt()) / 1000L;
+
+        sender.sendMessage("§6========== [PlayerSize] Статистика ==========");
+        sender.sendMessage("§7Хранилище: §e" + playerSizeManager.getStorage().describe());
+        sender.sendMessage("§7Очередь сохранения: §e" + saveManager.getQueueDepth() + " §7записей");
+        sender.sendMessage("§7Сохранений: §e" + saveManager.getFlushCount() + " §7(записей: §e"
+                + saveManager.getFlushedEntries() + "§7, ошибок: §e" + saveManager.getFailedFlushes() + "§7)");
+        long bytesWritten = playerSizeManager.getStorage().getBytesWritten();
+        long flushedEntries = saveManager.getFlushedEntries();
+        sender.sendMessage("§7Записано на диск: §e" + (bytesWritten / 1024) + " KB §7(§e"
+                + (flushedEntries == 0 ? 0 : bytesWritten / flushedEntries) + " §7байт на сохраненную запись)");
+        sender.sendMessage("§7Время сохранения: §eпосл. " + String.format("%.2f", saveManager.getLastFlushMillis())
+                + " мс§7, §eср. " + String.format("%.2f", saveManager.getAverageFlushMillis())
+                + " мс§7, §eмакс. " + String.format("%.2f", saveManager.getMaxFlushMillis()) + " мс");
+        sender.sendMessage("§7Последнее сохранение: §e" + secondsAgo + " §7сек. назад");
+
+        sender.sendMessage("§7Запись атрибутов: §e" + playerSizeManager.getAttributeWritesPerformed()
+                + " §7выполнено, §e" + playerSizeManager.getAttributeWritesAvoided()
+                + " §7пропущено (без изменений), §e" + playerSizeManager.getExternalChangesReverted()
+                + " §7восстановлено после изменений извне");
+        sender.sendMessage("§7Пересчет слоев размера: §e" + playerSizeManager.getBaseRecomputes()
+                + " §7основа, §e" + playerSizeManager.getModifierRecomputes() + " §7модификаторы");
+        AttributeApplyQueue applyQueue = playerSizeManager.getApplyQueue();
+        sender.sendMessage("§7Очередь применения: §e" + applyQueue.getQueueDepth() + " §7(макс. §e"
+                + applyQueue.getMaxDepth() + "§7), применено: §e" + applyQueue.getApplied() + "§7, объединено: §e"
+                + applyQueue.getCoalesced() + "§7, отложено: §e" + applyQueue.getDeferred());
+        sender.sendMessage("§7Эффекты частиц: §e" + particleEngine.getEffectsPlayed() + " §7показано (прорежено: §e"
+                + particleEngine.getEffectsThinned() + "§7), пропущено: §e" + particleEngine.getEffectsSkipped()
+                + "§7, частиц: §e" + particleEngine.getParticlesSent());
+        sender.sendMessage("§6===========================================");
+        return true;
+    }
+
+    private UUID findPlayerUUID(String name) {
+        // Сначала ищем по нику в сохраненных данных (индекс без учета регистра)
+        UUID uuid = playerSizeManager.findPlayerByName(name);
+        if (uuid != null) {
+            return uuid;
         }
 
         // Пытаемся найти онлайн игрока
@@ -696,22 +917,39 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             completions.add("reset");
             completions.add("check");
             completions.add("list");
+            completions.add("rank");
             completions.add("give");
+            completions.add("stats");
+            completions.add("tier");
         } else if (args.length == 2) {
-            // Имена игроков для set, reset, check, give
+            // Имена игроков для set, reset, check, rank, give
             String subCommand = args[0].toLowerCase();
-            if (subCommand.equals("set") || subCommand.equals("reset") || subCommand.equals("check")) {
-                // Онлайн игроки
+            if (subCommand.equals("set") || subCommand.equals("reset") || subCommand.equals("check")
+                    || subCommand.equals("rank")) {
+                String prefix = args[1];
+                // Сначала онлайн игроки
                 for (Player player : Bukkit.getOnlinePlayers()) {
-                    if (player.getName().toLowerCase().startsWith(args[1].toLowerCase())) {
+                    if (completions.size() >= TAB_COMPLETE_LIMIT) {
+                        break;
+                    }
+                    if (player.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
                         completions.add(player.getName());
                     }
                 }
-                // Оффлайн игроки из базы
-                Map<UUID, String> allNames = playerSizeManager.getAllPlayerNames();
-                for (String name : allNames.values()) {
-                    if (name.toLowerCase().startsWith(args[1].toLowerCase()) && !completions.contains(name)) {
-                        completions.add(name);
+                // Затем оффлайн игроки из индекса ников (онлайн уже добавлены выше)
+                playerSizeManager.completeNames(prefix, TAB_COMPLETE_LIMIT, completions,
+                        name -> Bukkit.getPlayerExact(name) != null);
+            } else if (subCommand.equals("tier")) {
+                // Тир есть только у онлайн игроков
+                if ("all".startsWith(args[1].toLowerCase())) {
+                    completions.add("all");
+                }
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    if (completions.size() >= TAB_COMPLETE_LIMIT) {
+                        break;
+                    }
+                    if (player.getName().regionMatches(true, 0, args[1], 0, args[1].length())) {
+                        completions.add(player.getName());
                     }
                 }
             } else if (subCommand.equals("give")) {
@@ -757,8 +995,7 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
             completions.add("64");
         } else if (args.length == 2 && args[0].equalsIgnoreCase("list")) {
             // Подсказки для номеров страниц
-            Map<UUID, Double> allSizes = playerSizeManager.getAllPlayerSizes();
-            int totalPages = (int) Math.ceil((double) allSizes.size() / 15.0);
+            int totalPages = (int) Math.ceil(playerSizeManager.getPlayerCount() / 15.0);
             for (int i = 1; i <= Math.min(totalPages, 10); i++) {
                 completions.add(String.valueOf(i));
             }
@@ -767,4 +1004,15 @@ public class PlayerSizePlugin extends JavaPlugin implements Listener, CommandExe
         return completions;
     }
 
+    // Предварительно загруженный вход: ник и момент подготовки
+    private record PreparedJoin(String name, long preparedAt) {
+
+        boolean isFresh(long now) {
+            return now - preparedAt < PREPARED_JOIN_TTL_MS;
+        }
+
+        boolean matches(String joinName, long now) {
+            return isFresh(now) && name.equals(joinName);
+        }
+    }
 }
@@ -0,0 +1,435 @@
+package com.meows.playersize;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+// Таблица размеров игроков с открытой адресацией.
+// Ключ - два long из UUID, размер - примитивный double (NaN = размер не задан),
+// поэтому на запись не создаются объекты UUID, Double и узлы HashMap.
+// Ники хранятся ссылками на строки из общего пула (String.intern).
+//
+// Таблица разбита на сегменты по старшим битам хеша, у каждого сегмента свой StampedLock:
+// - чтение оптимистичное (без блокировки), блокировка берется только если чтение совпало с записью;
+// - запись блокирует только свой сегмент, поэтому асинхронные потоки не ждут друг друга;
+// - обход идет по сегментам под блокировкой чтения каждого, без копирования всей таблицы.
+public class PlayerSizeTable {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+    private static final double MAX_LOAD_FACTOR = 0.6;
+
+    private final Segment[] segments;
+
+    public PlayerSizeTable() {
+        segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // Тот же хеш используется для раскладки слотов в player_sizes.dat
+    static int hash(long most, long least) {
+        long hash = most ^ least;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)];
+    }
+
+    // Возвращает NaN, если размер не задан
+    public double getSize(UUID uuid) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).getSize(hash, keyMost, keyLeast);
+    }
+
+    // Возвращает предыдущий размер (NaN, если его не было)
+    public double putSize(UUID uuid, double size) {
+        return putSize(uuid, size, null);
+    }
+
+    // listener вызывается под блокировкой сегмента, если размер изменился:
+    // так внешний индекс (таблица лидеров) меняется атомарно вместе с таблицей
+    public double putSize(UUID uuid, double size, SizeListener listener) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).putSize(uuid, hash, keyMost, keyLeast, size, listener);
+    }
+
+    public String getName(UUID uuid) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).getName(hash, keyMost, keyLeast);
+    }
+
+    public String putName(UUID uuid, String name) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).putName(hash, keyMost, keyLeast, name != null ? name.intern() : null);
+    }
+
+    public boolean contains(UUID uuid) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).contains(hash, keyMost, keyLeast);
+    }
+
+    // Добавляет запись, прочитанную с диска, только если ее еще нет в таблице
+    // (иначе запись с диска могла бы затереть более новое значение из другого потока)
+    public boolean insertIfAbsent(UUID uuid, double size, String name) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).insertIfAbsent(hash, keyMost, keyLeast, size, name != null ? name.intern() : null);
+    }
+
+    // Убирает запись из памяти (данные остаются в хранилище)
+    public boolean remove(UUID uuid) {
+        return remove(uuid, null);
+    }
+
+    // listener вызывается под блокировкой сегмента, если у удаленной записи был размер
+    public boolean remove(UUID uuid, SizeListener listener) {
+        long keyMost = uuid.getMostSignificantBits();
+        long keyLeast = uuid.getLeastSignificantBits();
+        int hash = hash(keyMost, keyLeast);
+        return segmentFor(hash).remove(uuid, hash, keyMost, keyLeast, listener);
+    }
+
+    // Количество игроков с заданным размером
+    public int sizeCount() {
+        int total = 0;
+        for (Segment segment : segments) {
+            total += segment.sizeCount;
+        }
+        return total;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    // Обход записей с заданным размером. Каждый сегмент обходится целиком под блокировкой чтения,
+    // поэтому запись не может быть видна наполовину. Изменять таблицу из consumer нельзя
+    public void forEach(PlayerDataStorage.EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer, false);
+        }
+    }
+
+    // Обход всех записей: с заданным размером или только с ником (размер NaN)
+    public void forEachRecord(PlayerDataStorage.EntryConsumer consumer) {
+        for (Segment segment : segments) {
+            segment.forEach(consumer, true);
+        }
+    }
+
+    // Обход всех известных ников (с теми же ограничениями, что и forEach)
+    public void forEachName(BiConsumer<UUID, String> consumer) {
+        for (Segment segment : segments) {
+            segment.forEachName(consumer);
+        }
+    }
+
+    public interface SizeListener {
+        void sizeChanged(UUID uuid, double previousSize, double newSize);
+    }
+
+    // Массивы одного размера меняются целиком (при росте или очистке),
+    // поэтому оптимистичное чтение никогда не увидит массивы разной длины
+    private static final class Slots {
+        final long[] most;
+        final long[] least;
+        final double[] sizes;
+        final String[] names;
+        final boolean[] used;
+
+        Slots(int capacity) {
+            most = new long[capacity];
+            least = new long[capacity];
+            sizes = new double[capacity];
+            names = new String[capacity];
+            used = new boolean[capacity];
+        }
+
+        // Линейное пробирование: слот с этим ключом или первый пустой.
+        // Число проб ограничено: при оптимистичном чтении массив может меняться
+        int findSlot(int hash, long keyMost, long keyLeast) {
+            int mask = used.length - 1;
+            int slot = hash & mask;
+            for (int probes = 0; probes < used.length; probes++) {
+                if (!used[slot] || (most[slot] == keyMost && least[slot] == keyLeast)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private volatile Slots slots = new Slots(INITIAL_SEGMENT_CAPACITY);
+        // Пишутся только под блокировкой записи
+        private int entries;
+        private volatile int sizeCount;
+
+        double getSize(int hash, long keyMost, long keyLeast) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                double size = slot >= 0 && current.used[slot] ? current.sizes[slot] : Double.NaN;
+                if (lock.validate(stamp)) {
+                    return size;
+                }
+            }
+
+            // Чтение совпало с записью - повторяем под блокировкой
+            stamp = lock.readLock();
+            try {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                return slot >= 0 && current.used[slot] ? current.sizes[slot] : Double.NaN;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        String getName(int hash, long keyMost, long keyLeast) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                String name = slot >= 0 && current.used[slot] ? current.names[slot] : null;
+                if (lock.validate(stamp)) {
+                    return name;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                return slot >= 0 && current.used[slot] ? current.names[slot] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean contains(int hash, long keyMost, long keyLeast) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                boolean found = slot >= 0 && current.used[slot];
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            }
+
+            stamp = lock.readLock();
+            try {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                return slot >= 0 && current.used[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        boolean insertIfAbsent(int hash, long keyMost, long keyLeast, double size, String name) {
+            long stamp = lock.writeLock();
+            try {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                if (current.used[slot]) {
+                    return false;
+                }
+                slot = insertSlot(hash, keyMost, keyLeast);
+                current = slots;
+                current.sizes[slot] = size;
+                current.names[slot] = name;
+                if (!Double.isNaN(size)) {
+                    sizeCount++;
+                }
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Удаление со сдвигом следующих записей цепочки назад (без "надгробий")
+        boolean remove(UUID uuid, int hash, long keyMost, long keyLeast, SizeListener listener) {
+            long stamp = lock.writeLock();
+            try {
+                Slots current = slots;
+                int slot = current.findSlot(hash, keyMost, keyLeast);
+                if (!current.used[slot]) {
+                    return false;
+                }
+                if (!Double.isNaN(current.sizes[slot])) {
+                    sizeCount--;
+                    if (listener != null) {
+                        listener.sizeChanged(uuid, current.sizes[slot], Double.NaN);
+                    }
+                }
+                entries--;
+
+                int mask = current.used.length - 1;
+                int free = slot;
+                int next = slot;
+                while (true) {
+                    next = (next + 1) & mask;
+                    if (!current.used[next]) {
+                        break;
+                    }
+                    int home = hash(current.most[next], current.least[next]) & mask;
+                    // Запись можно сдвинуть в free, только если ее домашний слот не лежит между free и next
+                    boolean between = free <= next ? (free < home && home <= next) : (free < home || home <= next);
+                    if (between) {
+                        continue;
+                    }
+                    current.most[free] = current.most[next];
+                    current.least[free] = current.least[next];
+                    current.sizes[free] = current.sizes[next];
+                    current.names[free] = current.names[next];
+                    free = next;
+                }
+                current.used[free] = false;
+                current.names[free] = null;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        double putSize(UUID uuid, int hash, long keyMost, long keyLeast, double size, SizeListener listener) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = insertSlot(hash, keyMost, keyLeast);
+                Slots current = slots;
+                double previous = current.sizes[slot];
+                current.sizes[slot] = size;
+                // NaN - размер не задан (запись остается ради ника)
+                if (Double.isNaN(previous) && !Double.isNaN(size)) {
+                    sizeCount++;
+                } else if (!Double.isNaN(previous) && Double.isNaN(size)) {
+                    sizeCount--;
+                }
+                if (listener != null && Double.compare(previous, size) != 0) {
+                    listener.sizeChanged(uuid, previous, size);
+                }
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        String putName(int hash, long keyMost, long keyLeast, String name) {
+            long stamp = lock.writeLock();
+            try {
+                int slot = insertSlot(hash, keyMost, keyLeast);
+                Slots current = slots;
+                String previous = current.names[slot];
+                current.names[slot] = name;
+                return previous;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Вызывается под блокировкой записи
+        private int insertSlot(int hash, long keyMost, long keyLeast) {
+            Slots current = slots;
+            int slot = current.findSlot(hash, keyMost, keyLeast);
+            if (current.used[slot]) {
+                return slot;
+            }
+
+            if (entries + 1 > current.used.length * MAX_LOAD_FACTOR) {
+                current = grow(current);
+                slot = current.findSlot(hash, keyMost, keyLeast);
+            }
+            current.used[slot] = true;
+            current.most[slot] = keyMost;
+            current.least[slot] = keyLeast;
+            current.sizes[slot] = Double.NaN;
+            entries++;
+            return slot;
+        }
+
+        private Slots grow(Slots old) {
+            Slots grown = new Slots(old.used.length * 2);
+            for (int i = 0; i < old.used.length; i++) {
+                if (!old.used[i]) {
+                    continue;
+                }
+                int slot = grown.findSlot(hash(old.most[i], old.least[i]), old.most[i], old.least[i]);
+                grown.used[slot] = true;
+                grown.most[slot] = old.most[i];
+                grown.least[slot] = old.least[i];
+                grown.sizes[slot] = old.sizes[i];
+                grown.names[slot] = old.names[i];
+            }
+            slots = grown;
+            return grown;
+        }
+
+        void clear() {
+            long stamp = lock.writeLock();
+            try {
+                slots = new Slots(INITIAL_SEGMENT_CAPACITY);
+                entries = 0;
+                sizeCount = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void forEach(PlayerDataStorage.EntryConsumer consumer, boolean includeNameOnly) {
+            long stamp = lock.readLock();
+            try {
+                Slots current = slots;
+                for (int i = 0; i < current.used.length; i++) {
+                    if (!current.used[i]) {
+                        continue;
+                    }
+                    if (!Double.isNaN(current.sizes[i]) || (includeNameOnly && current.names[i] != null)) {
+                        consumer.accept(new UUID(current.most[i], current.least[i]), current.sizes[i],
+                                current.names[i]);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEachName(BiConsumer<UUID, String> consumer) {
+            long stamp = lock.readLock();
+            try {
+                Slots current = slots;
+                for (int i = 0; i < current.used.length; i++) {
+                    if (current.used[i] && current.names[i] != null) {
+                        consumer.accept(new UUID(current.most[i], current.least[i]), current.names[i]);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.meows.playersize;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// Рецепт зелья, скомпилированный при загрузке конфига.
+// Каждому материалу по ordinal сопоставлен номер класса ингредиента, все грибы попадают в один класс.
+// Проверка сетки крафта - один проход по 9 слотам без выделения памяти.
+// Все методы вызываются из основного потока.
+public class PotionRecipe {
+
+    // Список всех грибов в Minecraft: в рецепте любой гриб заменяет любой другой
+    public static final Set<Material> MUSHROOM_MATERIALS = Set.of(
+            Material.BROWN_MUSHROOM,
+            Material.RED_MUSHROOM,
+            Material.CRIMSON_FUNGUS,
+            Material.WARPED_FUNGUS);
+
+    private static final int NO_CLASS = -1;
+
+    // Номер класса ингредиента по ordinal материала, NO_CLASS - материала нет в рецепте
+    private final int[] classByOrdinal;
+    // Сколько слотов нужно для каждого класса
+    private final int[] required;
+    // Материалы каждого класса (для логов и нативного рецепта)
+    private final List<List<Material>> classMaterials;
+    private final int totalSlots;
+    // Счетчики для проверки, переиспользуются между вызовами
+    private final int[] counts;
+
+    private PotionRecipe(int[] classByOrdinal, int[] required, List<List<Material>> classMaterials) {
+        this.classByOrdinal = classByOrdinal;
+        this.required = required;
+        this.classMaterials = classMaterials;
+        this.counts = new int[required.length];
+        int total = 0;
+        for (int amount : required) {
+            total += amount;
+        }
+        this.totalSlots = total;
+    }
+
+    // Собирает рецепт из списка материалов. Некорректные названия передаются в invalid
+    public static PotionRecipe compile(List<String> recipeItems, List<String> invalid) {
+        int[] classByOrdinal = new int[Material.values().length];
+        Arrays.fill(classByOrdinal, NO_CLASS);
+        List<Integer> amounts = new ArrayList<>();
+        List<List<Material>> classMaterials = new ArrayList<>();
+
+        for (String itemStr : recipeItems) {
+            Material material;
+            try {
+                material = Material.valueOf(itemStr.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                invalid.add(itemStr);
+                continue;
+            }
+
+            int cls = classByOrdinal[material.ordinal()];
+            if (cls == NO_CLASS) {
+                cls = amounts.size();
+                amounts.add(0);
+                List<Material> members = new ArrayList<>();
+                if (MUSHROOM_MATERIALS.contains(material)) {
+                    // Первый гриб в рецепте открывает общий класс для всех грибов
+                    for (Material mushroom : MUSHROOM_MATERIALS) {
+                        classByOrdinal[mushroom.ordinal()] = cls;
+                        members.add(mushroom);
+                    }
+                } else {
+                    classByOrdinal[material.ordinal()] = cls;
+                    members.add(material);
+                }
+                classMaterials.add(List.copyOf(members));
+            }
+            amounts.set(cls, amounts.get(cls) + 1);
+        }
+
+        int[] required = new int[amounts.size()];
+        for (int i = 0; i < required.length; i++) {
+            required[i] = amounts.get(i);
+        }
+        return new PotionRecipe(classByOrdinal, required, List.copyOf(classMaterials));
+    }
+
+    // Проверяет сетку крафта: каждый непустой слот должен относиться к рецепту,
+    // и слотов каждого класса должно быть ровно столько, сколько требуется
+    public boolean matches(ItemStack[] matrix) {
+        if (totalSlots == 0) {
+            return false;
+        }
+        Arrays.fill(counts, 0);
+        int nonEmptySlots = 0;
+
+        for (ItemStack item : matrix) {
+            if (item == null || item.getType() == Material.AIR) {
+                continue;
+            }
+            // Лишний слот - сразу отказ
+            if (++nonEmptySlots > totalSlots) {
+                return false;
+            }
+            int cls = classByOrdinal[item.getType().ordinal()];
+            if (cls == NO_CLASS || ++counts[cls] > required[cls]) {
+                return false;
+            }
+        }
+
+        // Ни один класс не превышен, значит при равенстве слотов все классы собраны полностью
+        return nonEmptySlots == totalSlots;
+    }
+
+    // Номер класса ингредиента для материала или -1, если материала нет в рецепте
+    public int classOf(Material material) {
+        return classByOrdinal[material.ordinal()];
+    }
+
+    public int getClassCount() {
+        return required.length;
+    }
+
+    public int getRequired(int cls) {
+        return required[cls];
+    }
+
+    public List<Material> getClassMaterials(int cls) {
+        return classMaterials.get(cls);
+    }
+
+    public int getTotalSlots() {
+        return totalSlots;
+    }
+}
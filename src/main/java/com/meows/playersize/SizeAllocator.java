@@ -0,0 +1,117 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Выдача размеров игрокам.
+// Размер по умолчанию не хранится, а вычисляется из UUID игрока и зерна сервера (size_seed.txt):
+// один и тот же игрок всегда получает один и тот же размер, пока зерно не сменится.
+// На диск сохраняются только явно заданные размеры (зелье, /playersize set).
+// Смена зерна (reroll) за O(1) меняет размеры по умолчанию всем игрокам сразу.
+// Методы можно вызывать из любого потока.
+public class SizeAllocator {
+
+    public static final String SEED_FILE = "size_seed.txt";
+
+    private final PlayerSizePlugin plugin;
+    private final File seedFile;
+    private volatile long seed;
+
+    public SizeAllocator(PlayerSizePlugin plugin) {
+        this.plugin = plugin;
+        this.seedFile = new File(plugin.getDataFolder(), SEED_FILE);
+        this.seed = loadSeed();
+    }
+
+    // Размер по умолчанию для игрока (без обращения к хранилищу)
+    public double defaultSize(UUID uuid) {
+        return defaultSize(uuid, plugin.getConfigManager().getSnapshot().globalProfile());
+    }
+
+    // Размер по умолчанию в мире с этим профилем. Игрок занимает одно и то же место
+    // в распределении каждого профиля, поэтому в разных мирах его рост меняется согласованно
+    public double defaultSize(UUID uuid, SizeProfile profile) {
+        if (!profile.useRandomSize()) {
+            return profile.defaultSize();
+        }
+        long hash = mix(mix(uuid.getMostSignificantBits() ^ seed) + uuid.getLeastSignificantBits());
+        // Старшие 53 бита -> число от 0 до 1
+        return scale(profile, (hash >>> 11) * 0x1.0p-53);
+    }
+
+    // Новый случайный размер по общим настройкам (применение зелья на мобов)
+    public double randomSize() {
+        return randomSize(plugin.getConfigManager().getSnapshot().globalProfile());
+    }
+
+    // Новый случайный размер по настройкам профиля (зелье игрока - по его тиру).
+    // ThreadLocalRandom - свой генератор у каждого потока, без общей блокировки
+    public double randomSize(SizeProfile profile) {
+        if (!profile.useRandomSize()) {
+            return profile.defaultSize();
+        }
+        return scale(profile, ThreadLocalRandom.current().nextDouble());
+    }
+
+    // Переводит число от 0 до 1 в размер по распределению профиля (округление до 2 знаков)
+    private static double scale(SizeProfile profile, double unit) {
+        double size = profile.sizeDistribution().sample(unit);
+        return Math.round(size * 100.0) / 100.0;
+    }
+
+    // Новое зерно: все размеры по умолчанию меняются разом, без перезаписи данных игроков
+    public synchronized void reseed() {
+        long next;
+        do {
+            next = ThreadLocalRandom.current().nextLong();
+        } while (next == seed);
+        seed = next;
+        saveSeed();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    private long loadSeed() {
+        if (seedFile.exists()) {
+            try {
+                return Long.parseLong(new String(Files.readAllBytes(seedFile.toPath()), StandardCharsets.UTF_8).trim());
+            } catch (IOException | NumberFormatException e) {
+                plugin.getLogger().severe("Не удалось прочитать " + SEED_FILE + ": " + e.getMessage()
+                        + ". Размеры по умолчанию изменятся!");
+            }
+        }
+        seed = ThreadLocalRandom.current().nextLong();
+        saveSeed();
+        plugin.getLogger().info("Создано новое зерно размеров: " + SEED_FILE);
+        return seed;
+    }
+
+    private void saveSeed() {
+        try {
+            if (!seedFile.getParentFile().exists()) {
+                seedFile.getParentFile().mkdirs();
+            }
+            // Временный файл и атомарная подмена, как для player_sizes.json
+            File tempFile = new File(seedFile.getParentFile(), SEED_FILE + ".tmp");
+            Files.write(tempFile.toPath(), Long.toString(seed).getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), seedFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Не удалось сохранить " + SEED_FILE + ": " + e.getMessage());
+        }
+    }
+
+    // Финальное перемешивание SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
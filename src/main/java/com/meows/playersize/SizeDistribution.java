@@ -0,0 +1,227 @@
+package com.meows.playersize;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Распределение случайного размера (sizes.distribution), собирается один раз при загрузке конфига.
+// sample(u) переводит равномерное число u из [0, 1) в размер за O(1):
+// для нормального распределения - по заранее посчитанной таблице обратной функции распределения,
+// для корзин - по таблице псевдонимов (alias method).
+// Объект неизменяемый, поэтому sample можно вызывать из любых потоков одновременно.
+// Распределения, собранные из одинаковых настроек, равны (equals) - так перезагрузка видит, что размеры не менялись.
+public abstract class SizeDistribution {
+
+    // Точек в таблице обратной функции распределения
+    private static final int INVERSE_TABLE_SIZE = 1025;
+    // Шагов численного интегрирования плотности
+    private static final int INTEGRATION_STEPS = 8192;
+
+    public abstract double sample(double u);
+
+    // Равномерно от min до max
+    public static SizeDistribution uniform(double min, double max) {
+        return new Uniform(min, max);
+    }
+
+    // Нормальное распределение, обрезанное до [min, max]
+    public static SizeDistribution truncatedNormal(double min, double max, double mean, double stdDev) {
+        if (max <= min) {
+            return new Uniform(min, max);
+        }
+
+        // Функция распределения на равномерной сетке (метод трапеций)
+        double step = (max - min) / INTEGRATION_STEPS;
+        double[] cdf = new double[INTEGRATION_STEPS + 1];
+        double previous = density(min, mean, stdDev);
+        for (int i = 1; i <= INTEGRATION_STEPS; i++) {
+            double current = density(min + i * step, mean, stdDev);
+            cdf[i] = cdf[i - 1] + (previous + current) * 0.5 * step;
+            previous = current;
+        }
+        double total = cdf[INTEGRATION_STEPS];
+        if (!(total > 0)) {
+            // Среднее слишком далеко от диапазона - плотность внутри диапазона неотличима от нуля
+            return new Uniform(min, max);
+        }
+
+        // Обратная функция на равномерной сетке по u, между точками - линейная интерполяция
+        double[] inverse = new double[INVERSE_TABLE_SIZE];
+        int j = 0;
+        for (int k = 0; k < INVERSE_TABLE_SIZE; k++) {
+            double target = total * k / (INVERSE_TABLE_SIZE - 1);
+            while (j < INTEGRATION_STEPS - 1 && cdf[j + 1] < target) {
+                j++;
+            }
+            double width = cdf[j + 1] - cdf[j];
+            double fraction = width > 0 ? Math.min(1.0, Math.max(0.0, (target - cdf[j]) / width)) : 0.0;
+            inverse[k] = min + (j + fraction) * step;
+        }
+        inverse[0] = min;
+        inverse[INVERSE_TABLE_SIZE - 1] = max;
+        return new Tabulated(inverse);
+    }
+
+    // Корзины: сначала выбирается корзина с вероятностью по весу, затем размер равномерно внутри нее
+    public static SizeDistribution buckets(List<Bucket> buckets) {
+        int n = buckets.size();
+        double[] mins = new double[n];
+        double[] widths = new double[n];
+        double totalWeight = 0;
+        for (int i = 0; i < n; i++) {
+            Bucket bucket = buckets.get(i);
+            mins[i] = bucket.min;
+            widths[i] = bucket.max - bucket.min;
+            totalWeight += bucket.weight;
+        }
+
+        // Построение таблицы псевдонимов (метод Воуза)
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = buckets.get(i).weight * n / totalWeight;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Остатки из-за погрешности округления - вероятность 1
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        return new Buckets(mins, widths, probability, alias);
+    }
+
+    private static double density(double x, double mean, double stdDev) {
+        double z = (x - mean) / stdDev;
+        return Math.exp(-0.5 * z * z);
+    }
+
+    // Корзина распределения: диапазон размеров и вес
+    public static final class Bucket {
+        final double min;
+        final double max;
+        final double weight;
+
+        public Bucket(double min, double max, double weight) {
+            this.min = min;
+            this.max = max;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Uniform extends SizeDistribution {
+        private final double min;
+        private final double width;
+
+        Uniform(double min, double max) {
+            this.min = min;
+            this.width = max - min;
+        }
+
+        @Override
+        public double sample(double u) {
+            return min + width * u;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Uniform other && min == other.min && width == other.width;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(min) * 31 + Double.hashCode(width);
+        }
+    }
+
+    private static final class Tabulated extends SizeDistribution {
+        private final double[] inverse;
+
+        Tabulated(double[] inverse) {
+            this.inverse = inverse;
+        }
+
+        @Override
+        public double sample(double u) {
+            double position = u * (inverse.length - 1);
+            int index = Math.min((int) position, inverse.length - 2);
+            double fraction = position - index;
+            return inverse[index] + (inverse[index + 1] - inverse[index]) * fraction;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tabulated other && Arrays.equals(inverse, other.inverse);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(inverse);
+        }
+    }
+
+    private static final class Buckets extends SizeDistribution {
+        private final double[] mins;
+        private final double[] widths;
+        private final double[] probability;
+        private final int[] alias;
+
+        Buckets(double[] mins, double[] widths, double[] probability, int[] alias) {
+            this.mins = mins;
+            this.widths = widths;
+            this.probability = probability;
+            this.alias = alias;
+        }
+
+        @Override
+        public double sample(double u) {
+            // Одно число u дает и столбец таблицы, и выбор между столбцом и псевдонимом,
+            // и положение внутри корзины
+            double position = u * probability.length;
+            int column = Math.min((int) position, probability.length - 1);
+            double fraction = position - column;
+            double p = probability[column];
+            if (fraction < p) {
+                return mins[column] + widths[column] * (fraction / p);
+            }
+            int bucket = alias[column];
+            return mins[bucket] + widths[bucket] * ((fraction - p) / (1.0 - p));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Buckets other && Arrays.equals(mins, other.mins) && Arrays.equals(widths, other.widths)
+                    && Arrays.equals(probability, other.probability) && Arrays.equals(alias, other.alias);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(mins) * 31 + Arrays.hashCode(probability);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.meows.playersize;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+// Таблица лидеров по росту: декартово дерево (treap) с размерами поддеревьев.
+// Порядок - размер по убыванию, при равенстве - UUID.
+// Обновление, место игрока и начало страницы - O(log n), страница из k строк - O(log n + k).
+public class SizeLeaderboard {
+
+    private Node root;
+
+    public synchronized void clear() {
+        root = null;
+    }
+
+    // previousSize = NaN, если игрока еще не было в таблице; newSize = NaN - убрать игрока из таблицы
+    public synchronized void update(UUID uuid, double previousSize, double newSize) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        if (!Double.isNaN(previousSize)) {
+            root = remove(root, previousSize, most, least);
+        }
+        if (!Double.isNaN(newSize)) {
+            root = insert(root, new Node(newSize, most, least));
+        }
+    }
+
+    // Место игрока (с 1) или -1, если его нет в таблице
+    public synchronized int rank(UUID uuid, double size) {
+        long most = uuid.getMostSignificantBits();
+        long least = uuid.getLeastSignificantBits();
+        int rank = 0;
+        Node node = root;
+        while (node != null) {
+            int c = compare(size, most, least, node);
+            if (c < 0) {
+                node = node.left;
+            } else if (c == 0) {
+                return rank + count(node.left) + 1;
+            } else {
+                rank += count(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int size() {
+        return count(root);
+    }
+
+    // Обход не больше limit записей, начиная с позиции from (с 0).
+    // consumer вызывается вне блокировки (он может читать таблицу размеров, которая сама обновляет
+    // таблицу лидеров), поэтому страница сначала копируется целиком за один захват монитора:
+    // обновление во время обхода не сдвигает позиции, и запись не пропадает и не повторяется
+    public void page(int from, int limit, PageConsumer consumer) {
+        long[] most;
+        long[] least;
+        double[] sizes;
+        int copied;
+        synchronized (this) {
+            int length = Math.max(0, Math.min(limit, count(root) - from));
+            most = new long[length];
+            least = new long[length];
+            sizes = new double[length];
+            copied = copyRange(from, length, most, least, sizes);
+        }
+        for (int i = 0; i < copied; i++) {
+            consumer.accept(from + i, new UUID(most[i], least[i]), sizes[i]);
+        }
+    }
+
+    // Вызывается под монитором
+    private int copyRange(int from, int limit, long[] most, long[] least, double[] sizes) {
+        // Спускаемся к from-му элементу, запоминая узлы, которые идут после него
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        int k = from;
+        while (node != null) {
+            int leftCount = count(node.left);
+            if (k < leftCount) {
+                stack.push(node);
+                node = node.left;
+            } else if (k == leftCount) {
+                stack.push(node);
+                break;
+            } else {
+                k -= leftCount + 1;
+                node = node.right;
+            }
+        }
+
+        // Обход по порядку от найденного элемента
+        int copied = 0;
+        while (!stack.isEmpty() && copied < limit) {
+            Node current = stack.pop();
+            most[copied] = current.most;
+            least[copied] = current.least;
+            sizes[copied] = current.size;
+            copied++;
+
+            Node next = current.right;
+            while (next != null) {
+                stack.push(next);
+                next = next.left;
+            }
+        }
+        return copied;
+    }
+
+    private static int compare(double size, long most, long least, Node node) {
+        // Больший размер - выше в таблице
+        int c = Double.compare(node.size, size);
+        if (c != 0) {
+            return c;
+        }
+        c = Long.compare(most, node.most);
+        return c != 0 ? c : Long.compare(least, node.least);
+    }
+
+    private static Node insert(Node node, Node inserted) {
+        if (node == null) {
+            return inserted;
+        }
+        if (compare(inserted.size, inserted.most, inserted.least, node) < 0) {
+            node.left = insert(node.left, inserted);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, inserted);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private static Node remove(Node node, double size, long most, long least) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(size, most, least, node);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        }
+        if (c < 0) {
+            node.left = remove(node.left, size, most, least);
+        } else {
+            node.right = remove(node.right, size, most, least);
+        }
+        node.update();
+        return node;
+    }
+
+    // Все элементы left идут раньше всех элементов right
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        left.update();
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        right.update();
+        return right;
+    }
+
+    private static int count(Node node) {
+        return node == null ? 0 : node.count;
+    }
+
+    public interface PageConsumer {
+        void accept(int position, UUID uuid, double size);
+    }
+
+    private static final class Node {
+        final double size;
+        final long most;
+        final long least;
+        // Приоритет из хеша UUID - дерево сбалансировано в среднем
+        final int priority;
+        int count = 1;
+        Node left;
+        Node right;
+
+        Node(double size, long most, long least) {
+            this.size = size;
+            this.most = most;
+            this.least = least;
+            this.priority = PlayerSizeTable.hash(most, least);
+        }
+
+        void update() {
+            count = 1 + SizeLeaderboard.count(left) + SizeLeaderboard.count(right);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.meows.playersize;
+
+// Модификатор размера поверх основного размера игрока (временное зелье, предметы, другие плагины).
+// key - имя модификатора: повторный модификатор с тем же именем заменяет предыдущий.
+// expiresAt - момент окончания (System.currentTimeMillis()), 0 - действует, пока его не уберут.
+// Объект неизменяемый
+public record SizeModifier(String key, Operation operation, double value, long expiresAt) {
+
+    // Порядок применения: сначала SET заменяет основной размер (действует последний добавленный),
+    // затем прибавляются все ADD, затем результат умножается на все MULTIPLY
+    public enum Operation {
+        SET,
+        ADD,
+        MULTIPLY
+    }
+
+    // Модификатор, который действует durationMillis миллисекунд (0 - без ограничения)
+    public static SizeModifier of(String key, Operation operation, double value, long durationMillis) {
+        long expiresAt = durationMillis > 0 ? System.currentTimeMillis() + durationMillis : 0;
+        return new SizeModifier(key, operation, value, expiresAt);
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt != 0 && now >= expiresAt;
+    }
+}
@@ -0,0 +1,135 @@
+package com.meows.playersize;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Слои размера онлайн игрока:
+//   1. основа - заданный размер (зелье, /playersize set) или размер по умолчанию
+//      по профилю мира или тиру игрока (PlayerSizeManager.getProfileSize)
+//   2. модификаторы (SizeModifier) - SET, затем ADD, затем MULTIPLY
+// Каждый слой хранит посчитанное значение и флаг "устарел". При изменении одного слоя
+// пересчитывается только он, итоговый размер собирается из готовых значений.
+// Основа помечается устаревшей из любого потока (смена размера), остальное - только из основного потока.
+public class SizeModifierStack {
+
+    // Пределы атрибута GENERIC_SCALE в Minecraft
+    public static final double MIN_SCALE = 0.0625;
+    public static final double MAX_SCALE = 16.0;
+
+    // Слой 1: основа и профиль, по которому она посчитана
+    private volatile boolean baseDirty = true;
+    private SizeProfile baseProfile;
+    private double base;
+
+    // Слой 2: модификаторы в порядке добавления и их свертка
+    private final Map<String, SizeModifier> modifiers = new LinkedHashMap<>();
+    private boolean modifiersDirty;
+    private double setValue = Double.NaN;
+    private double addSum;
+    private double multiplyProduct = 1.0;
+    // Ближайшее окончание временного модификатора (Long.MAX_VALUE - таких нет)
+    private long nextExpiry = Long.MAX_VALUE;
+
+    // Заданный размер, зерно или распределение изменились - основу нужно посчитать заново
+    public void invalidateBase() {
+        baseDirty = true;
+    }
+
+    public void put(SizeModifier modifier) {
+        // Замененный модификатор переносится в конец: SET действует последний добавленный
+        modifiers.remove(modifier.key());
+        modifiers.put(modifier.key(), modifier);
+        modifiersDirty = true;
+    }
+
+    public boolean remove(String key) {
+        if (modifiers.remove(key) == null) {
+            return false;
+        }
+        modifiersDirty = true;
+        return true;
+    }
+
+    public boolean hasModifiers() {
+        return !modifiers.isEmpty();
+    }
+
+    public Collection<SizeModifier> getModifiers() {
+        return modifiers.values();
+    }
+
+    // Итоговый размер в мире с этим профилем. Слои, которые не менялись, не пересчитываются.
+    // counters[0] - пересчеты основы, counters[1] - пересчеты модификаторов (для /playersize stats)
+    public double resolve(UUID uuid, SizeProfile profile, PlayerSizeManager sizeManager, long now,
+            long[] counters) {
+        // Другой мир, тир или новый снимок конфига - другой объект профиля
+        if (profile != baseProfile) {
+            baseProfile = profile;
+            baseDirty = true;
+        }
+        if (baseDirty) {
+            // Флаг снимается до расчета: если размер изменят во время расчета, основа пересчитается снова
+            baseDirty = false;
+            base = sizeManager.getProfileSize(uuid, profile);
+            counters[0]++;
+        }
+
+        if (now >= nextExpiry) {
+            pruneExpired(now);
+        }
+        if (modifiersDirty) {
+            foldModifiers();
+            counters[1]++;
+        }
+
+        if (modifiers.isEmpty()) {
+            return base;
+        }
+        // Без округления, как и основа: нейтральный модификатор (ADD 0, MULTIPLY 1) не меняет
+        // заданный размер с точностью до 0.0001
+        double size = Double.isNaN(setValue) ? base : setValue;
+        size = (size + addSum) * multiplyProduct;
+        // Модификаторы, как и заданный размер, не выходят за диапазон профиля мира
+        // (в мире с фиксированным размером min-size = max-size)
+        size = profile.clampOverride(size);
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, size));
+    }
+
+    private void pruneExpired(long now) {
+        Iterator<SizeModifier> iterator = modifiers.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+        // Свертка и ближайшее окончание пересчитываются заново
+        modifiersDirty = true;
+    }
+
+    private void foldModifiers() {
+        modifiersDirty = false;
+        setValue = Double.NaN;
+        addSum = 0.0;
+        multiplyProduct = 1.0;
+        nextExpiry = Long.MAX_VALUE;
+        for (SizeModifier modifier : modifiers.values()) {
+            switch (modifier.operation()) {
+                case SET:
+                    setValue = modifier.value();
+                    break;
+                case ADD:
+                    addSum += modifier.value();
+                    break;
+                case MULTIPLY:
+                    multiplyProduct *= modifier.value();
+                    break;
+            }
+            if (modifier.expiresAt() != 0) {
+                nextExpiry = Math.min(nextExpiry, modifier.expiresAt());
+            }
+        }
+    }
+}
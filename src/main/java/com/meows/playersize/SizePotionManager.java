@@ -14,40 +14,53 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerItemConsumeEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.inventory.meta.PotionMeta;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
-import java.util.Random;
 import java.util.UUID;
 
 public class SizePotionManager implements Listener {
 
+    // Имя модификатора временного размера от зелья (potion.duration-seconds)
+    public static final String POTION_MODIFIER = "potion";
+
     private final PlayerSizePlugin plugin;
-    private final Random random;
     private NamespacedKey sizePotionKey;
+    // Готовое зелье, собранное по текущему конфигу. Выдается только копиями
+    private ItemStack prototype;
 
     public SizePotionManager(PlayerSizePlugin plugin) {
         this.plugin = plugin;
-        this.random = new Random();
         this.sizePotionKey = new NamespacedKey(plugin, "size_potion");
+        reload();
+    }
+
+    // Пересобирает зелье по конфигу (при загрузке плагина и /playersize reload)
+    public void reload() {
+        prototype = buildSizePotion();
     }
 
     public ItemStack createSizePotion() {
+        return prototype.clone();
+    }
+
+    private ItemStack buildSizePotion() {
         ItemStack potion = new ItemStack(Material.POTION);
         PotionMeta meta = (PotionMeta) potion.getItemMeta();
 
         if (meta != null) {
-            ConfigManager config = plugin.getConfigManager();
+            ConfigSnapshot config = plugin.getConfigManager().getSnapshot();
 
-            meta.setDisplayName(config.getPotionName());
-            meta.setLore(config.getPotionLore());
+            meta.setDisplayName(config.potionName());
+            meta.setLore(config.potionLore());
 
             // Устанавливаем цвет зелья из конфига
             meta.setColor(Color.fromRGB(
-                    config.getPotionColorRed(),
-                    config.getPotionColorGreen(),
-                    config.getPotionColorBlue()));
+                    config.potionColorRed(),
+                    config.potionColorGreen(),
+                    config.potionColorBlue()));
 
             // Добавляем кастомный эффект для идентификации
             meta.addCustomEffect(new PotionEffect(PotionEffectType.LUCK, 1, 0, false, false, false), false);
@@ -63,16 +76,15 @@ public class SizePotionManager implements Listener {
     }
 
     public boolean isSizePotion(ItemStack item) {
-        if (item == null || item.getType() != Material.POTION) {
+        // Обычные зелья без мета-данных отсекаем без копирования меты
+        if (item == null || item.getType() != Material.POTION || !item.hasItemMeta()) {
             return false;
         }
 
-        if (!(item.getItemMeta() instanceof PotionMeta)) {
-            return false;
-        }
-
-        PotionMeta meta = (PotionMeta) item.getItemMeta();
-        return meta != null && meta.getPersistentDataContainer().has(sizePotionKey,
+        // Зелье узнаем только по ключу: одна копия меты и одно чтение PersistentDataContainer.
+        // Сравнение с прототипом (isSimilar) сравнивает всю мету и на чужих зельях стоит дороже
+        ItemMeta meta = item.getItemMeta();
+        return meta instanceof PotionMeta && meta.getPersistentDataContainer().has(sizePotionKey,
                 org.bukkit.persistence.PersistentDataType.BOOLEAN);
     }
 
@@ -89,10 +101,8 @@ public class SizePotionManager implements Listener {
 
         Player player = event.getPlayer();
 
-        // Применяем изменение размера с задержкой
-        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-            applySizeChange(player);
-        }, 1L);
+        // Применяем изменение размера (атрибуты запишет очередь через тик)
+        applySizeChange(player);
     }
 
     @EventHandler
@@ -150,32 +160,38 @@ public class SizePotionManager implements Listener {
     }
 
     private void applySizeChange(Player player) {
-        // Генерируем новый размер
-        double newSize;
-        if (plugin.getConfigManager().isUseRandomSize()) {
-            newSize = plugin.getConfigManager().getMinSize()
-                    + (plugin.getConfigManager().getMaxSize() - plugin.getConfigManager().getMinSize())
-                            * random.nextDouble();
-            newSize = Math.round(newSize * 100.0) / 100.0;
-        } else {
-            newSize = plugin.getConfigManager().getDefaultSize();
-        }
-
         UUID uuid = player.getUniqueId();
-        plugin.getPlayerSizeManager().setPlayerSize(uuid, newSize);
-        plugin.getPlayerSizeManager().setPlayerName(uuid, player.getName());
-        plugin.getPlayerSizeManager().savePlayerSizes();
+        PlayerSizeManager sizeManager = plugin.getPlayerSizeManager();
+
+        // Генерируем новый размер в диапазоне тира игрока (тир берется из кэша, без проверки прав).
+        // Временный размер действует в текущем мире, поэтому он берется из профиля мира
+        int durationSeconds = plugin.getConfigManager().getPotionDurationSeconds();
+        SizeProfile profile = sizeManager.getTierProfile(uuid);
+        if (durationSeconds > 0) {
+            profile = plugin.getConfigManager().getSnapshot().profileFor(player.getWorld().getName(), profile);
+        }
+        double newSize = sizeManager.getAllocator().randomSize(profile);
+
+        if (durationSeconds > 0) {
+            // Временный размер - модификатор поверх основного размера, на диск не сохраняется.
+            // Модификатор сам ставит игрока в очередь применения
+            sizeManager.addModifier(player, SizeModifier.of(POTION_MODIFIER, SizeModifier.Operation.SET, newSize,
+                    durationSeconds * 1000L));
+        } else {
+            sizeManager.setPlayerSize(uuid, newSize);
+            sizeManager.setPlayerName(uuid, player.getName());
 
-        // Применяем размер и здоровье
-        plugin.getPlayerSizeManager().applySize(player, newSize);
-        plugin.getPlayerSizeManager().applyHealth(player, newSize);
+            // Применяем размер и здоровье
+            sizeManager.queueApply(player, 1);
+        }
 
         // Визуальные эффекты
         spawnPotionEffects(player);
 
         // Сообщения
         player.sendMessage("§6§l[Зелье Изменения Роста]");
-        player.sendMessage("§aВаш размер изменен на §e" + newSize);
+        player.sendMessage("§aВаш размер изменен на §e" + newSize
+                + (durationSeconds > 0 ? " §aна §e" + durationSeconds + " §aсек." : ""));
         player.sendMessage("§7Рост: §e~" + String.format("%.2f", newSize * 1.8) + " блока");
 
         plugin.getLogger()
@@ -184,15 +200,7 @@ public class SizePotionManager implements Listener {
 
     private void applySizeChangeToMob(LivingEntity mob, Player player) {
         // Генерируем новый размер
-        double newSize;
-        if (plugin.getConfigManager().isUseRandomSize()) {
-            newSize = plugin.getConfigManager().getMinSize()
-                    + (plugin.getConfigManager().getMaxSize() - plugin.getConfigManager().getMinSize())
-                            * random.nextDouble();
-            newSize = Math.round(newSize * 100.0) / 100.0;
-        } else {
-            newSize = plugin.getConfigManager().getDefaultSize();
-        }
+        double newSize = plugin.getPlayerSizeManager().getAllocator().randomSize();
 
         // Применяем размер мобу
         try {
@@ -222,33 +230,7 @@ public class SizePotionManager implements Listener {
     }
 
     public void spawnPotionEffects(org.bukkit.entity.LivingEntity entity) {
-        double height = entity.getHeight();
-
-        // Частицы вокруг существа
-        for (int i = 0; i < 30; i++) {
-            double angle = 2 * Math.PI * i / 30.0;
-            double x = Math.cos(angle) * 0.5;
-            double z = Math.sin(angle) * 0.5;
-
-            entity.getWorld().spawnParticle(
-                    org.bukkit.Particle.DUST,
-                    entity.getLocation().add(x, height / 2, z),
-                    1,
-                    new org.bukkit.Particle.DustOptions(
-                            Color.fromRGB(255, 165, 0), // Оранжевый цвет
-                            1.0f));
-        }
-
-        // Вспышка сверху (используем несколько частиц для эффекта)
-        for (int i = 0; i < 10; i++) {
-            entity.getWorld().spawnParticle(
-                    org.bukkit.Particle.HEART,
-                    entity.getLocation().add(0, height + (i * 0.1), 0),
-                    1,
-                    0.3, 0.3, 0.3);
-        }
-
-        // Звук
-        entity.getWorld().playSound(entity.getLocation(), org.bukkit.Sound.ENTITY_PLAYER_LEVELUP, 1.0f, 1.2f);
+        // Частицы и звук (с учетом радиуса видимости и лимита частиц за тик)
+        plugin.getParticleEngine().play(entity);
     }
 }
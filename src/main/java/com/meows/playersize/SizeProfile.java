@@ -0,0 +1,46 @@
+package com.meows.playersize;
+
+// Настройки размеров и здоровья: общие (sizes и health), тира прав (permission-tiers)
+// или группы миров (world-profiles). Профили собираются при загрузке конфига,
+// в снимке хранится готовая таблица мир -> профиль и упорядоченный список тиров.
+// Объект неизменяемый, читать можно из любого потока.
+public record SizeProfile(
+        String name,
+        // Обрезать заданные размеры до min-size..max-size (профили миров).
+        // В общих настройках и тирах заданный размер применяется как есть
+        boolean clampOverrides,
+
+        // Настройки размеров
+        double minSize,
+        double maxSize,
+        double defaultSize,
+        boolean useRandomSize,
+        SizeDistribution sizeDistribution,
+
+        // Настройки здоровья
+        boolean reduceHealthForSmallPlayers,
+        double smallSizeThreshold,
+        int healthReduction) {
+
+    // Значения по умолчанию, если в конфиге нет разделов sizes и health
+    public static final SizeProfile DEFAULTS = new SizeProfile("global", false, 0.75, 0.9, 0.83, true,
+            SizeDistribution.uniform(0.75, 0.9), true, 0.666, 2);
+
+    // Заданный размер (зелье, /playersize set) в мире с этим профилем
+    public double clampOverride(double size) {
+        if (!clampOverrides) {
+            return size;
+        }
+        return Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    public boolean sameSizes(SizeProfile other) {
+        return minSize == other.minSize && maxSize == other.maxSize && defaultSize == other.defaultSize
+                && useRandomSize == other.useRandomSize && sizeDistribution.equals(other.sizeDistribution);
+    }
+
+    public boolean sameHealth(SizeProfile other) {
+        return reduceHealthForSmallPlayers == other.reduceHealthForSmallPlayers
+                && smallSizeThreshold == other.smallSizeThreshold && healthReduction == other.healthReduction;
+    }
+}
@@ -0,0 +1,205 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Волна входов: 500 игроков заходят на сервер с N сохраненными игроками.
+// Было: обработчик входа задавал новому игроку случайный размер и переписывал весь player_sizes.json
+// в основном потоке. Стало: запись готовится при AsyncPlayerPreLoginEvent в пуле потоков
+// (размер из таблицы, ник в таблицу и индексы), а на диск ее пачками пишет поток сохранения.
+// PlayerSizeManager без сервера не создать, поэтому замер повторяет его шаги на тех же структурах:
+// PlayerSizeTable, индекс ников, NamePrefixIndex и хранилище. Работа основного потока после входа
+// (проверка тира, таблица лидеров, очередь применения) от числа сохраненных игроков не зависит и сюда не входит.
+// Аргументы - числа сохраненных игроков, по умолчанию 10000 и 100000
+public class JoinStormBenchmark {
+
+    private static final int JOINS = 500;
+    // Старый путь с полной перезаписью json слишком медленный для 500 входов
+    private static final int BASELINE_JOINS = 50;
+    private static final int PRE_LOGIN_THREADS = 8;
+    private static final int SAVE_BATCH = 20;
+    private static final Logger LOGGER = Logger.getLogger(JoinStormBenchmark.class.getName());
+
+    public static void main(String[] args) throws Exception {
+        LOGGER.setLevel(Level.WARNING);
+        int[] counts = args.length > 0
+                ? Stream.of(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 10_000, 100_000 };
+
+        System.out.printf("%-8s %9s %16s %18s %18s%n", "формат", "игроков", "было (осн.)",
+                "подготовка (пул)", "сохранение (фон)");
+        for (int stored : counts) {
+            for (String format : new String[] { "json", "journal", "binary" }) {
+                run(format, stored);
+            }
+        }
+    }
+
+    private static void run(String format, int stored) throws Exception {
+        File folder = Files.createTempDirectory("playersize-bench").toFile();
+        try {
+            SplittableRandom random = new SplittableRandom(1);
+            MemoryRecords seed = new MemoryRecords();
+            List<UUID> known = new ArrayList<>(stored);
+            for (int i = 0; i < stored; i++) {
+                UUID uuid = UUID.randomUUID();
+                known.add(uuid);
+                seed.set(uuid, 0.8, "Old" + i);
+            }
+            JsonPlayerStorage seedStorage = new JsonPlayerStorage(folder, LOGGER, false);
+            seedStorage.save(seed, seed.keys());
+            seedStorage.close();
+
+            String baseline = "-";
+            if (format.equals("json")) {
+                baseline = String.format(Locale.ROOT, "%.2f мс", baseline(folder, seed, random));
+            }
+
+            JoinState state = new JoinState();
+            PlayerDataStorage storage = open(format, folder);
+            storage.load(state);
+            state.rebuildPrefixIndex();
+
+            // Половина входов - новые игроки, половина - вернувшиеся
+            List<UUID> joins = new ArrayList<>(JOINS);
+            for (int i = 0; i < JOINS; i++) {
+                joins.add(i % 2 == 0 ? UUID.randomUUID() : known.get(random.nextInt(stored)));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(PRE_LOGIN_THREADS);
+            long start = System.nanoTime();
+            List<Future<?>> prepared = new ArrayList<>(JOINS);
+            for (int i = 0; i < JOINS; i++) {
+                UUID uuid = joins.get(i);
+                String name = "Join" + i;
+                prepared.add(pool.submit(() -> state.prepareJoin(uuid, name)));
+            }
+            for (Future<?> future : prepared) {
+                future.get();
+            }
+            double prepareMs = (System.nanoTime() - start) / 1e6 / JOINS;
+            pool.shutdown();
+
+            start = System.nanoTime();
+            List<UUID> batch = new ArrayList<>(SAVE_BATCH);
+            for (UUID uuid; (uuid = state.dirty.poll()) != null;) {
+                batch.add(uuid);
+                if (batch.size() == SAVE_BATCH) {
+                    storage.save(state, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                storage.save(state, batch);
+            }
+            double saveMs = (System.nanoTime() - start) / 1e6 / JOINS;
+            storage.close();
+
+            System.out.printf("%-8s %,9d %16s %15.3f мс %15.3f мс%n", format, stored, baseline, prepareMs, saveMs);
+        } finally {
+            StorageWriteBenchmark.delete(folder);
+        }
+    }
+
+    // Старый обработчик входа: новый игрок получает случайный размер и ник, весь json переписывается
+    private static double baseline(File folder, MemoryRecords seed, SplittableRandom random) {
+        MemoryRecords records = new MemoryRecords();
+        records.sizes.putAll(seed.sizes);
+        records.names.putAll(seed.names);
+        JsonPlayerStorage storage = new JsonPlayerStorage(folder, LOGGER, false);
+        long start = System.nanoTime();
+        for (int i = 0; i < BASELINE_JOINS; i++) {
+            double size = Math.round((0.75 + 0.15 * random.nextDouble()) * 100) / 100.0;
+            records.set(UUID.randomUUID(), size, "New" + i);
+            storage.save(records, List.of());
+        }
+        double perJoin = (System.nanoTime() - start) / 1e6 / BASELINE_JOINS;
+        storage.close();
+        return perJoin;
+    }
+
+    private static PlayerDataStorage open(String format, File folder) {
+        switch (format) {
+            case "journal":
+                return new JournalPlayerStorage(folder, LOGGER, () -> 1024 * 1024L);
+            case "binary":
+                return new MappedPlayerStorage(folder, LOGGER);
+            default:
+                return new JsonPlayerStorage(folder, LOGGER, false);
+        }
+    }
+
+    // Данные игроков, как в PlayerSizeManager: таблица размеров и ников, индекс ников без учета регистра,
+    // отсортированные ники для автодополнения и очередь измененных записей для потока сохранения
+    private static final class JoinState implements PlayerDataStorage.Records {
+        final PlayerSizeTable table = new PlayerSizeTable();
+        final Map<String, UUID> nameIndex = new ConcurrentHashMap<>();
+        final NamePrefixIndex prefixIndex = new NamePrefixIndex();
+        final Queue<UUID> dirty = new ConcurrentLinkedQueue<>();
+
+        // Шаги PlayerSizePlugin.prepareJoin: getOverrideSize и setPlayerName
+        void prepareJoin(UUID uuid, String name) {
+            table.getSize(uuid);
+            String previous = table.putName(uuid, name);
+            if (previous != null && !previous.equalsIgnoreCase(name)) {
+                if (nameIndex.remove(previous.toLowerCase(Locale.ROOT), uuid)) {
+                    prefixIndex.remove(previous);
+                }
+            }
+            nameIndex.put(name.toLowerCase(Locale.ROOT), uuid);
+            prefixIndex.add(name);
+            if (!name.equals(previous)) {
+                dirty.add(uuid);
+            }
+        }
+
+        void rebuildPrefixIndex() {
+            List<String> names = new ArrayList<>(nameIndex.size());
+            table.forEachName((uuid, name) -> names.add(name));
+            prefixIndex.rebuild(names);
+        }
+
+        @Override
+        public void loadEntry(UUID uuid, Double size, String name) {
+            if (size != null) {
+                table.putSize(uuid, size);
+            }
+            if (name != null) {
+                table.putName(uuid, name);
+                nameIndex.put(name.toLowerCase(Locale.ROOT), uuid);
+            }
+        }
+
+        @Override
+        public void forEachEntry(PlayerDataStorage.EntryConsumer consumer) {
+            table.forEachRecord(consumer);
+        }
+
+        @Override
+        public Double getResidentSize(UUID uuid) {
+            double size = table.getSize(uuid);
+            return Double.isNaN(size) ? null : size;
+        }
+
+        @Override
+        public String getResidentName(UUID uuid) {
+            return table.getName(uuid);
+        }
+    }
+}
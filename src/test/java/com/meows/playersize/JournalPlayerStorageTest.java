@@ -0,0 +1,174 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Журнал: записи переживают перезапуск, оборванная или испорченная последняя запись отбрасывается,
+// сжатие в player_sizes.json ничего не теряет
+class JournalPlayerStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger(JournalPlayerStorageTest.class.getName());
+    // Порог сжатия по умолчанию (storage.journal-compact-threshold-kb: 1024)
+    private static final long NO_COMPACTION = 1024 * 1024;
+
+    @TempDir
+    File folder;
+
+    private JournalPlayerStorage open(long compactThreshold, MemoryRecords into) {
+        JournalPlayerStorage storage = new JournalPlayerStorage(folder, LOGGER, () -> compactThreshold);
+        storage.load(into);
+        return storage;
+    }
+
+    private MemoryRecords reload() {
+        MemoryRecords loaded = new MemoryRecords();
+        open(NO_COMPACTION, loaded).close();
+        return loaded;
+    }
+
+    private File journal() {
+        return new File(folder, JournalPlayerStorage.JOURNAL_FILE);
+    }
+
+    @Test
+    void savedRecordsReplayAfterRestart() {
+        MemoryRecords records = new MemoryRecords();
+        JournalPlayerStorage storage = open(NO_COMPACTION, records);
+        UUID sized = UUID.randomUUID();
+        UUID nameOnly = UUID.randomUUID();
+        UUID cleared = UUID.randomUUID();
+        records.set(sized, 0.72, "Sized");
+        records.set(nameOnly, null, "NameOnly");
+        records.set(cleared, 1.5, "Cleared");
+        assertTrue(storage.save(records, records.keys()));
+        // Более поздняя запись журнала убирает размер, ник остается
+        records.set(cleared, null, null);
+        assertTrue(storage.save(records, List.of(cleared)));
+        storage.close();
+
+        MemoryRecords loaded = reload();
+        assertEquals(records.sizes, loaded.sizes);
+        assertEquals(records.names, loaded.names);
+        assertNull(loaded.sizes.get(cleared));
+    }
+
+    @Test
+    void truncatedTailRecordIsSkippedAndCut() throws IOException {
+        List<UUID> uuids = saveSeparately(3);
+        long length = journal().length();
+        long recordLength = length / 3;
+        // Сервер упал посреди записи последней записи
+        try (RandomAccessFile file = new RandomAccessFile(journal(), "rw")) {
+            file.setLength(length - 5);
+        }
+
+        MemoryRecords loaded = reload();
+        assertEquals(0.61, loaded.sizes.get(uuids.get(0)));
+        assertEquals(0.62, loaded.sizes.get(uuids.get(1)));
+        assertFalse(loaded.names.containsKey(uuids.get(2)));
+        assertEquals(2 * recordLength, journal().length(), "оборванная запись должна быть отрезана");
+
+        // Новые записи дописываются после отрезанного хвоста и читаются при следующем запуске
+        MemoryRecords records = new MemoryRecords();
+        JournalPlayerStorage storage = open(NO_COMPACTION, records);
+        UUID late = UUID.randomUUID();
+        records.set(late, 0.9, "P9");
+        assertTrue(storage.save(records, List.of(late)));
+        storage.close();
+        assertEquals(0.9, reload().sizes.get(late));
+    }
+
+    @Test
+    void corruptCrcTailRecordIsSkipped() throws IOException {
+        List<UUID> uuids = saveSeparately(3);
+        long length = journal().length();
+        // Один байт ника в последней записи (перед crc) испорчен
+        try (RandomAccessFile file = new RandomAccessFile(journal(), "rw")) {
+            file.seek(length - 5);
+            int value = file.read();
+            file.seek(length - 5);
+            file.write(value ^ 0xFF);
+        }
+
+        MemoryRecords loaded = reload();
+        assertEquals(2, loaded.names.size());
+        assertFalse(loaded.names.containsKey(uuids.get(2)));
+        assertEquals(length / 3 * 2, journal().length());
+    }
+
+    @Test
+    void compactionRoundTripKeepsEveryRecord() {
+        MemoryRecords records = new MemoryRecords();
+        // Порог в 1 байт: журнал сворачивается после каждого сохранения
+        JournalPlayerStorage storage = open(1, records);
+        for (int i = 0; i < 50; i++) {
+            records.set(UUID.randomUUID(), i % 3 == 0 ? null : 0.6 + i / 100.0, "P" + i);
+        }
+        assertTrue(storage.save(records, records.keys()));
+        assertEquals(0, journal().length(), "журнал должен быть свернут");
+        assertTrue(new File(folder, JsonPlayerStorage.DATA_FILE).exists());
+
+        // Изменение после сжатия и еще одно сжатие
+        UUID first = records.keys().iterator().next();
+        records.set(first, 1.25, "Renamed");
+        assertTrue(storage.save(records, List.of(first)));
+        storage.close();
+
+        MemoryRecords loaded = reload();
+        assertEquals(records.sizes, loaded.sizes);
+        assertEquals(records.names, loaded.names);
+    }
+
+    @Test
+    void longMultibyteNameIsCutOnCharacterBoundary() {
+        MemoryRecords records = new MemoryRecords();
+        JournalPlayerStorage storage = open(NO_COMPACTION, records);
+        UUID cyrillic = UUID.randomUUID();
+        UUID emoji = UUID.randomUUID();
+        // 80 байт по 2 байта на символ и 81 байт с 4-байтными символами, сдвинутыми на 1 байт
+        records.set(cyrillic, 0.7, "ж".repeat(40));
+        records.set(emoji, 0.7, "a" + "😀".repeat(20));
+        assertTrue(storage.save(records, records.keys()));
+        storage.close();
+
+        MemoryRecords loaded = reload();
+        assertEquals("ж".repeat(32), loaded.names.get(cyrillic));
+        assertEquals("a" + "😀".repeat(15), loaded.names.get(emoji));
+        assertFalse(loaded.names.get(emoji).contains("�"));
+    }
+
+    @Test
+    void truncateUtf8KeepsWholeCharacters() {
+        byte[] bytes = "aжb".getBytes(StandardCharsets.UTF_8);
+        assertEquals("a", new String(JournalPlayerStorage.truncateUtf8(bytes, 2), StandardCharsets.UTF_8));
+        assertEquals("aж", new String(JournalPlayerStorage.truncateUtf8(bytes, 3), StandardCharsets.UTF_8));
+        assertEquals(bytes, JournalPlayerStorage.truncateUtf8(bytes, 4));
+    }
+
+    // count записей, каждая своим сохранением, ники одинаковой длины (записи одного размера)
+    private List<UUID> saveSeparately(int count) {
+        MemoryRecords records = new MemoryRecords();
+        JournalPlayerStorage storage = open(NO_COMPACTION, records);
+        List<UUID> uuids = new java.util.ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            UUID uuid = UUID.randomUUID();
+            uuids.add(uuid);
+            records.set(uuid, 0.6 + i / 100.0, "P" + i);
+            assertTrue(storage.save(records, List.of(uuid)));
+        }
+        storage.close();
+        return uuids;
+    }
+}
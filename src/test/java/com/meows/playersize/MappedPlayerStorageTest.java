@@ -0,0 +1,174 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Бинарный формат: записи переживают перезапуск и расширение таблицы, импорт из json и журнала,
+// поиск одной записи, ники по границе символа и отказ открыть поврежденный файл
+class MappedPlayerStorageTest {
+
+    private static final Logger LOGGER = Logger.getLogger(MappedPlayerStorageTest.class.getName());
+
+    @TempDir
+    File folder;
+
+    private MappedPlayerStorage open(MemoryRecords into) {
+        MappedPlayerStorage storage = new MappedPlayerStorage(folder, LOGGER);
+        storage.load(into);
+        return storage;
+    }
+
+    private MemoryRecords reload() {
+        MemoryRecords loaded = new MemoryRecords();
+        open(loaded).close();
+        return loaded;
+    }
+
+    // Размеры с шагом 0.0001 хранятся без потерь (storedSize)
+    private static double size(int i) {
+        return (5000 + i % 5000) / 10000.0;
+    }
+
+    @Test
+    void roundTripAcrossGrowAndRestart() {
+        MemoryRecords records = new MemoryRecords();
+        MappedPlayerStorage storage = open(records);
+        assertTrue(storage.isAvailable());
+        // Начальная емкость 1024: 5000 записей расширяют таблицу несколько раз, часть пачками
+        List<UUID> batch = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            UUID uuid = UUID.randomUUID();
+            records.set(uuid, i % 4 == 0 ? null : size(i), "Player" + i);
+            batch.add(uuid);
+            if (batch.size() == 250) {
+                assertTrue(storage.save(records, batch));
+                batch.clear();
+            }
+        }
+        // Ник без размера, затем у записи с размером размер убирается и меняется ник
+        UUID renamed = records.sizes.keySet().iterator().next();
+        records.set(renamed, null, "Renamed");
+        assertTrue(storage.save(records, List.of(renamed)));
+        storage.close();
+
+        MemoryRecords loaded = reload();
+        assertEquals(records.sizes, loaded.sizes);
+        assertEquals(records.names, loaded.names);
+        assertNull(loaded.sizes.get(renamed));
+        assertFalse(new File(folder, MappedPlayerStorage.DATA_FILE + ".grow").exists());
+    }
+
+    @Test
+    void lookupReadsSingleRecord() {
+        MemoryRecords records = new MemoryRecords();
+        MappedPlayerStorage storage = open(records);
+        UUID sized = UUID.randomUUID();
+        UUID nameOnly = UUID.randomUUID();
+        records.set(sized, 0.7231, "Sized");
+        records.set(nameOnly, null, "NameOnly");
+        assertTrue(storage.save(records, records.keys()));
+
+        MemoryRecords found = new MemoryRecords();
+        assertTrue(storage.lookup(sized, (uuid, size, name) -> found.set(uuid, size, name)));
+        assertEquals(0.7231, found.sizes.get(sized));
+        assertTrue(storage.lookup(nameOnly, (uuid, size, name) -> {
+            assertTrue(Double.isNaN(size));
+            assertEquals("NameOnly", name);
+        }));
+        assertFalse(storage.lookup(UUID.randomUUID(), (uuid, size, name) -> {
+        }));
+        storage.close();
+    }
+
+    @Test
+    void importsJsonAndJournalOnFirstStart() {
+        MemoryRecords records = new MemoryRecords();
+        for (int i = 0; i < 100; i++) {
+            records.set(UUID.randomUUID(), i % 3 == 0 ? null : size(i), "P" + i);
+        }
+        JsonPlayerStorage json = new JsonPlayerStorage(folder, LOGGER, false);
+        assertTrue(json.save(records, records.keys()));
+        // Хвост журнала, который еще не свернут в json
+        JournalPlayerStorage journal = new JournalPlayerStorage(folder, LOGGER, () -> Long.MAX_VALUE);
+        journal.load(new MemoryRecords());
+        UUID late = UUID.randomUUID();
+        records.set(late, 1.25, "Late");
+        assertTrue(journal.save(records, List.of(late)));
+        journal.close();
+
+        MemoryRecords imported = new MemoryRecords();
+        open(imported).close();
+        assertEquals(records.sizes, imported.sizes);
+        assertEquals(records.names, imported.names);
+        assertFalse(new File(folder, JournalPlayerStorage.JOURNAL_FILE).exists());
+
+        // Второй запуск читает уже player_sizes.dat
+        MemoryRecords loaded = reload();
+        assertEquals(records.sizes, loaded.sizes);
+        assertEquals(records.names, loaded.names);
+    }
+
+    @Test
+    void interruptedGrowIsRolledBack() throws IOException {
+        MemoryRecords records = new MemoryRecords();
+        MappedPlayerStorage storage = open(records);
+        UUID before = UUID.randomUUID();
+        records.set(before, 0.8, "Before");
+        assertTrue(storage.save(records, List.of(before)));
+        storage.close();
+        File data = new File(folder, MappedPlayerStorage.DATA_FILE);
+        File backup = new File(folder, MappedPlayerStorage.DATA_FILE + ".grow");
+        Files.copy(data.toPath(), backup.toPath());
+
+        // Сервер упал посреди перекладки: в player_sizes.dat мусор, но копия цела
+        try (RandomAccessFile file = new RandomAccessFile(data, "rw")) {
+            file.seek(64);
+            file.write(new byte[256]);
+        }
+
+        MemoryRecords loaded = reload();
+        assertEquals(0.8, loaded.sizes.get(before));
+        assertFalse(backup.exists());
+    }
+
+    @Test
+    void longMultibyteNameIsCutOnCharacterBoundary() {
+        MemoryRecords records = new MemoryRecords();
+        MappedPlayerStorage storage = open(records);
+        UUID uuid = UUID.randomUUID();
+        // 256 байт: предел пула в 255 байт приходится на второй байт последнего символа
+        records.set(uuid, 0.7, "ж".repeat(128));
+        assertTrue(storage.save(records, List.of(uuid)));
+        storage.close();
+
+        assertEquals("ж".repeat(127), reload().names.get(uuid));
+    }
+
+    @Test
+    void corruptFileLeavesStorageUnavailable() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder, MappedPlayerStorage.DATA_FILE), "rw")) {
+            file.write(new byte[64]);
+        }
+        MemoryRecords records = new MemoryRecords();
+        MappedPlayerStorage storage = open(records);
+        // PlayerSizeManager по isAvailable переходит на json, иначе каждое сохранение вернет false
+        assertFalse(storage.isAvailable());
+        UUID uuid = UUID.randomUUID();
+        records.set(uuid, 0.7, "P");
+        assertFalse(storage.save(records, List.of(uuid)));
+        storage.close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.meows.playersize;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Записи в обычных картах вместо PlayerSizeManager: форматы хранения проверяются без сервера.
+// loadEntry ведет себя так же, как у менеджера: null убирает размер, ник только добавляется
+final class MemoryRecords implements PlayerDataStorage.Records {
+
+    final Map<UUID, Double> sizes = new LinkedHashMap<>();
+    final Map<UUID, String> names = new LinkedHashMap<>();
+
+    // Изменение записи "в игре": размер (null - убрать) и ник
+    void set(UUID uuid, Double size, String name) {
+        if (size != null) {
+            sizes.put(uuid, size);
+        } else {
+            sizes.remove(uuid);
+        }
+        if (name != null) {
+            names.put(uuid, name);
+        }
+    }
+
+    Set<UUID> keys() {
+        Set<UUID> keys = new LinkedHashSet<>(sizes.keySet());
+        keys.addAll(names.keySet());
+        return keys;
+    }
+
+    @Override
+    public void loadEntry(UUID uuid, Double size, String name) {
+        set(uuid, size, name);
+    }
+
+    @Override
+    public void forEachEntry(PlayerDataStorage.EntryConsumer consumer) {
+        for (UUID uuid : keys()) {
+            Double size = sizes.get(uuid);
+            consumer.accept(uuid, size != null ? size : Double.NaN, names.get(uuid));
+        }
+    }
+
+    @Override
+    public Double getResidentSize(UUID uuid) {
+        return sizes.get(uuid);
+    }
+
+    @Override
+    public String getResidentName(UUID uuid) {
+        return names.get(uuid);
+    }
+}
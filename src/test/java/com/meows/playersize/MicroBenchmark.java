@@ -0,0 +1,46 @@
+package com.meows.playersize;
+
+import java.util.function.IntToLongFunction;
+
+// Простой замер для сравнения реализаций без JMH: прогрев, затем несколько серий,
+// в вывод идет лучшая и средняя серия в наносекундах на операцию.
+// Бенчмарки - классы *Benchmark с методом main, surefire их не запускает. Запуск:
+//   mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.meows.playersize.<Класс>
+final class MicroBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+
+    // Результаты складываются сюда, чтобы JIT не выбросил замеряемый код
+    private static volatile long sink;
+
+    private MicroBenchmark() {
+    }
+
+    // op получает номер операции и возвращает любое число, зависящее от результата
+    static double run(String name, int opsPerRound, IntToLongFunction op) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            round(opsPerRound, op);
+        }
+        double best = Double.MAX_VALUE;
+        double total = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            double nanosPerOp = round(opsPerRound, op);
+            best = Math.min(best, nanosPerOp);
+            total += nanosPerOp;
+        }
+        System.out.printf("%-40s %10.1f нс/оп (среднее %.1f)%n", name, best, total / MEASURED_ROUNDS);
+        return best;
+    }
+
+    private static double round(int ops, IntToLongFunction op) {
+        long accumulator = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            accumulator += op.applyAsLong(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += accumulator;
+        return (double) elapsed / ops;
+    }
+}
@@ -0,0 +1,67 @@
+package com.meows.playersize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Автодополнение ника среди 100000 сохраненных игроков: NamePrefixIndex против старого пути
+// onTabComplete - копия всех ников, toLowerCase каждого и проверка дубликатов через ArrayList.contains.
+// Префиксы из одной-трех букв, как при наборе ника
+public class NamePrefixIndexBenchmark {
+
+    private static final int NAMES = 100_000;
+    private static final int LIMIT = 50;
+
+    public static void main(String[] args) {
+        Random random = new Random(5);
+        List<String> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            names.add(randomName(random));
+        }
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.rebuild(names);
+
+        String[] prefixes = new String[256];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = randomName(random).substring(0, 1 + random.nextInt(3));
+        }
+        int mask = prefixes.length - 1;
+
+        double indexed = MicroBenchmark.run("NamePrefixIndex.complete", 100_000, i -> {
+            List<String> out = new ArrayList<>();
+            index.complete(prefixes[i & mask], LIMIT, out, name -> false);
+            return out.size();
+        });
+        double scan = MicroBenchmark.run("Перебор всех ников", 20,
+                i -> naiveComplete(names, prefixes[i & mask]).size());
+        System.out.printf("Ускорение: %.0fx%n", scan / indexed);
+
+        MicroBenchmark.run("NamePrefixIndex.add + remove", 10_000, i -> {
+            String name = "Renamed" + i;
+            index.add(name);
+            index.remove(name);
+            return index.size();
+        });
+    }
+
+    // Старый onTabComplete: все ники без ограничения, дубликаты через contains
+    private static List<String> naiveComplete(List<String> names, String prefix) {
+        List<String> completions = new ArrayList<>();
+        for (String name : new ArrayList<>(names)) {
+            if (name.toLowerCase().startsWith(prefix.toLowerCase()) && !completions.contains(name)) {
+                completions.add(name);
+            }
+        }
+        return completions;
+    }
+
+    // Ники Minecraft: 3-16 символов из букв, цифр и подчеркивания
+    private static String randomName(Random random) {
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_";
+        char[] chars = new char[3 + random.nextInt(14)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,127 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+// Автодополнение ников: префикс без учета регистра, смена ника (как в PlayerSizeManager.indexName),
+// удаление и сравнение с простым перебором на случайных изменениях
+class NamePrefixIndexTest {
+
+    private static List<String> complete(NamePrefixIndex index, String prefix, int limit) {
+        List<String> out = new ArrayList<>();
+        index.complete(prefix, limit, out, name -> false);
+        return out;
+    }
+
+    @Test
+    void prefixIgnoresCase() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.rebuild(List.of("steve", "Alex", "STEVEN", "Stella", "bob", "Steve_2"));
+
+        assertEquals(List.of("steve", "Steve_2", "STEVEN"), complete(index, "STEV", 50));
+        assertEquals(List.of("Stella", "steve", "Steve_2", "STEVEN"), complete(index, "st", 50));
+        assertEquals(List.of("Alex", "bob", "Stella"), complete(index, "", 3));
+        assertEquals(List.of(), complete(index, "z", 50));
+        // Ники, которые уже есть среди онлайн игроков, пропускаются и не занимают место в limit
+        List<String> out = new ArrayList<>();
+        index.complete("st", 2, out, name -> name.equals("Stella"));
+        assertEquals(List.of("steve", "Steve_2"), out);
+    }
+
+    @Test
+    void duplicatesDifferingInCaseAreMerged() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.rebuild(List.of("Steve", "steve", "STEVE"));
+        assertEquals(1, index.size());
+
+        // Тот же ник в другом регистре заменяет старое написание
+        index.add("SteVe");
+        assertEquals(List.of("SteVe"), complete(index, "s", 50));
+    }
+
+    @Test
+    void renameMovesNameToNewPosition() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        index.rebuild(List.of("Alex", "Bob", "Carl"));
+
+        // PlayerSizeManager.indexName: старый ник убирается, новый добавляется
+        index.remove("Bob");
+        index.add("Zed");
+        assertEquals(List.of(), complete(index, "b", 50));
+        assertEquals(List.of("Zed"), complete(index, "z", 50));
+        assertEquals(List.of("Alex", "Carl", "Zed"), complete(index, "", 50));
+
+        // Удаление отсутствующего ника ничего не меняет, удаление не зависит от регистра
+        index.remove("Nobody");
+        index.remove("CARL");
+        assertEquals(List.of("Alex", "Zed"), complete(index, "", 50));
+    }
+
+    @Test
+    void growsPastInitialCapacity() {
+        NamePrefixIndex index = new NamePrefixIndex();
+        for (int i = 999; i >= 0; i--) {
+            index.add(String.format("P%03d", i));
+        }
+        assertEquals(1000, index.size());
+        assertEquals(List.of("P120", "P121", "P122"), complete(index, "p12", 3));
+    }
+
+    @Test
+    void agreesWithNaiveScanOnRandomChanges() {
+        Random random = new Random(11);
+        NamePrefixIndex index = new NamePrefixIndex();
+        // Простая модель: ключ - ник в нижнем регистре, значение - последнее написание
+        TreeMap<String, String> model = new TreeMap<>();
+        List<String> initial = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            initial.add(randomName(random));
+        }
+        index.rebuild(initial);
+        for (String name : initial) {
+            model.putIfAbsent(lower(name), name);
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            String name = randomName(random);
+            if (random.nextInt(3) == 0) {
+                index.remove(name);
+                model.remove(lower(name));
+            } else {
+                index.add(name);
+                model.put(lower(name), name);
+            }
+
+            String prefix = randomName(random).substring(0, random.nextInt(3));
+            List<String> expected = new ArrayList<>();
+            for (String value : model.tailMap(lower(prefix)).values()) {
+                if (expected.size() == 10 || !lower(value).startsWith(lower(prefix))) {
+                    break;
+                }
+                expected.add(value);
+            }
+            assertEquals(expected, complete(index, prefix, 10), "префикс " + prefix + ", шаг " + step);
+        }
+        assertEquals(model.size(), index.size());
+    }
+
+    // Короткие ники из малого алфавита в разном регистре - много общих префиксов и совпадений
+    private static String randomName(Random random) {
+        char[] chars = new char[2 + random.nextInt(3)];
+        for (int i = 0; i < chars.length; i++) {
+            char c = (char) ('a' + random.nextInt(4));
+            chars[i] = random.nextBoolean() ? Character.toUpperCase(c) : c;
+        }
+        return new String(chars);
+    }
+
+    private static String lower(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,45 @@
+package com.meows.playersize;
+
+// Эффект изменения роста без отправки пакетов: точки кольца для 20 зрителей по готовой таблице смещений
+// против старого расчета cos/sin на каждую точку, и расчет прореживания для серии эффектов в одном тике
+public class ParticleEffectEngineBenchmark {
+
+    private static final int VIEWERS = 20;
+    private static final int BUDGET = 2000;
+
+    public static void main(String[] args) {
+        double table = MicroBenchmark.run("Кольцо: таблица смещений", 100_000, i -> {
+            double sum = 0;
+            for (int viewer = 0; viewer < VIEWERS; viewer++) {
+                for (int p = 0; p < ParticleEffectEngine.RING_POINTS; p++) {
+                    sum += i + ParticleEffectEngine.RING_X[p] + ParticleEffectEngine.RING_Z[p];
+                }
+            }
+            return Double.doubleToRawLongBits(sum);
+        });
+        double trig = MicroBenchmark.run("Кольцо: cos/sin на каждую точку", 100_000, i -> {
+            double sum = 0;
+            for (int viewer = 0; viewer < VIEWERS; viewer++) {
+                for (int p = 0; p < ParticleEffectEngine.RING_POINTS; p++) {
+                    double angle = 2 * Math.PI * p / ParticleEffectEngine.RING_POINTS;
+                    sum += i + Math.cos(angle) * ParticleEffectEngine.RING_RADIUS
+                            + Math.sin(angle) * ParticleEffectEngine.RING_RADIUS;
+                }
+            }
+            return Double.doubleToRawLongBits(sum);
+        });
+        System.out.printf("Ускорение: %.1fx%n", trig / table);
+
+        // Серия эффектов в одном тике: доля зрителя, прореживание и учет потраченного лимита
+        MicroBenchmark.run("Лимит: 100 эффектов за тик", 100_000, i -> {
+            int spent = 0;
+            for (int effect = 0; effect < 100; effect++) {
+                int perViewer = ParticleEffectEngine.perViewer(BUDGET, spent, 1 + (i + effect) % VIEWERS);
+                if (perViewer >= 2) {
+                    spent += (1 + (i + effect) % VIEWERS) * ParticleEffectEngine.costFor(perViewer);
+                }
+            }
+            return spent;
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Лимит частиц: полный эффект, прореживание в пределах доли зрителя и серия эффектов в одном тике,
+// которая не выходит за performance.particle-budget-per-tick
+class ParticleEffectEngineTest {
+
+    @Test
+    void fullEffectWhenBudgetAllows() {
+        for (int perViewer : new int[] { ParticleEffectEngine.FULL_COST, 100, Integer.MAX_VALUE }) {
+            assertEquals(1, ParticleEffectEngine.ringStepFor(perViewer));
+            assertEquals(ParticleEffectEngine.HEART_COUNT, ParticleEffectEngine.heartsFor(perViewer));
+            assertEquals(ParticleEffectEngine.FULL_COST, ParticleEffectEngine.costFor(perViewer));
+        }
+    }
+
+    @Test
+    void thinnedEffectFitsShareAndKeepsBothParts() {
+        for (int perViewer = 2; perViewer < ParticleEffectEngine.FULL_COST; perViewer++) {
+            int hearts = ParticleEffectEngine.heartsFor(perViewer);
+            int cost = ParticleEffectEngine.costFor(perViewer);
+            assertTrue(hearts >= 1 && hearts < ParticleEffectEngine.HEART_COUNT, "сердечек: " + hearts);
+            assertTrue(cost <= perViewer, "доля " + perViewer + ", отправлено " + cost);
+            // Кольцо не исчезает: хотя бы одна точка
+            assertTrue(cost > hearts, "доля " + perViewer);
+        }
+        // Два - минимум: одна точка кольца и одно сердечко
+        assertEquals(2, ParticleEffectEngine.costFor(2));
+    }
+
+    @Test
+    void effectsInOneTickStayWithinBudget() {
+        int[] budgets = { 40, 100, 500, 2000 };
+        int[] viewerCounts = { 1, 3, 7, 20, 60 };
+        for (int budget : budgets) {
+            for (int viewers : viewerCounts) {
+                int spent = 0;
+                int played = 0;
+                // Массовая операция: много эффектов подряд, пока лимит не кончится
+                for (int effect = 0; effect < 1000; effect++) {
+                    int perViewer = ParticleEffectEngine.perViewer(budget, spent, viewers);
+                    if (perViewer < 2) {
+                        continue;
+                    }
+                    spent += viewers * ParticleEffectEngine.costFor(perViewer);
+                    played++;
+                }
+                String label = "лимит " + budget + ", зрителей " + viewers;
+                assertTrue(spent <= budget, label + ": отправлено " + spent);
+                assertEquals(budget / viewers >= 2, played > 0, label);
+                // После серии на зрителя не остается даже минимального эффекта
+                assertTrue(ParticleEffectEngine.perViewer(budget, spent, viewers) < 2, label);
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+// Проверки PlayerSizeTable под нагрузкой из нескольких потоков:
+// потерянные записи, рост сегментов во время оптимистичного чтения, удаление со сдвигом цепочки
+// и обход, который не должен видеть запись наполовину
+class PlayerSizeTableTest {
+
+    private static final int THREADS = 8;
+
+    private static UUID key(int thread, int index) {
+        return new UUID(0x5EED_0000_0000_0000L | thread, index * 0x9E3779B97F4A7C15L);
+    }
+
+    // Размер однозначно задается индексом ключа: любое другое прочитанное значение - ошибка
+    private static double sizeOf(int index) {
+        return 0.5 + index % 1000 / 100.0;
+    }
+
+    @Test
+    void singleThreadedPutGetRemove() {
+        PlayerSizeTable table = new PlayerSizeTable();
+        UUID uuid = key(0, 1);
+
+        assertTrue(Double.isNaN(table.getSize(uuid)));
+        assertTrue(Double.isNaN(table.putSize(uuid, 1.5)));
+        assertEquals(1.5, table.putSize(uuid, 2.0));
+        assertEquals(2.0, table.getSize(uuid));
+        assertNull(table.putName(uuid, "Steve"));
+        assertEquals("Steve", table.getName(uuid));
+        assertEquals(1, table.sizeCount());
+
+        // Снятый размер оставляет запись ради ника
+        table.putSize(uuid, Double.NaN);
+        assertEquals(0, table.sizeCount());
+        assertTrue(table.contains(uuid));
+        assertEquals("Steve", table.getName(uuid));
+
+        assertTrue(table.remove(uuid));
+        assertFalse(table.contains(uuid));
+        assertFalse(table.remove(uuid));
+        assertNull(table.getName(uuid));
+    }
+
+    @Test
+    void insertIfAbsentKeepsNewerValue() {
+        PlayerSizeTable table = new PlayerSizeTable();
+        UUID uuid = key(0, 2);
+        table.putSize(uuid, 1.25);
+
+        assertFalse(table.insertIfAbsent(uuid, 3.0, "Old"));
+        assertEquals(1.25, table.getSize(uuid));
+        assertNull(table.getName(uuid));
+    }
+
+    // Каждый поток пишет, читает и удаляет свои ключи; ключи разных потоков попадают в одни сегменты.
+    // В конце в таблице должны остаться ровно записи, которые потоки не удаляли
+    @Test
+    void concurrentPutGetRemoveLosesNothing() throws Exception {
+        PlayerSizeTable table = new PlayerSizeTable();
+        int perThread = 20_000;
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < perThread; i++) {
+                UUID uuid = key(thread, i);
+                table.putSize(uuid, sizeOf(i));
+                table.putName(uuid, "p" + thread + "_" + i);
+                double read = table.getSize(uuid);
+                if (read != sizeOf(i)) {
+                    errors.add("поток " + thread + " ключ " + i + ": прочитано " + read);
+                }
+                // Каждый третий ключ удаляется сразу, еще каждый третий - через 99 шагов (из середины цепочки)
+                if (i % 3 == 0) {
+                    table.remove(uuid);
+                } else if (i % 3 == 1 && i >= 100) {
+                    table.remove(key(thread, i - 99));
+                }
+            }
+        });
+
+        assertTrue(errors.isEmpty(), String.join("\n", errors));
+        int expected = 0;
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < perThread; i++) {
+                UUID uuid = key(thread, i);
+                boolean removed = i % 3 == 0 || (i % 3 == 1 && i + 99 < perThread);
+                if (removed) {
+                    assertFalse(table.contains(uuid), "ключ " + thread + "/" + i + " должен быть удален");
+                } else {
+                    expected++;
+                    assertEquals(sizeOf(i), table.getSize(uuid), "размер " + thread + "/" + i);
+                    assertEquals("p" + thread + "_" + i, table.getName(uuid), "ник " + thread + "/" + i);
+                }
+            }
+        }
+        assertEquals(expected, table.sizeCount());
+    }
+
+    // Читатели без блокировки опрашивают заранее записанные ключи, пока писатель добавляет и удаляет
+    // другие ключи. Каждый раунд идет на новой таблице, поэтому сегменты каждый раз растут с начального
+    // размера. Читатель не должен увидеть NaN или чужой размер
+    @Test
+    void optimisticReadsSurviveGrowAndShift() throws Exception {
+        int stable = 256;
+        AtomicReference<PlayerSizeTable> current = new AtomicReference<>(tableWithStableKeys(stable));
+        AtomicBoolean running = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        ExecutorService readers = Executors.newFixedThreadPool(THREADS - 1);
+        List<Future<Long>> reads = new ArrayList<>();
+        for (int r = 0; r < THREADS - 1; r++) {
+            int offset = r;
+            reads.add(readers.submit(() -> {
+                long count = 0;
+                int i = offset;
+                while (running.get()) {
+                    PlayerSizeTable table = current.get();
+                    double read = table.getSize(key(0, i));
+                    if (read != sizeOf(i)) {
+                        errors.add("ключ " + i + ": прочитано " + read);
+                    }
+                    if (!table.contains(key(0, i))) {
+                        errors.add("ключ " + i + " пропал");
+                    }
+                    i = (i + 7) % stable;
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        // Писатель: 20 000 новых ключей (сегменты удваиваются с 16 до 2048 слотов), затем их удаление -
+        // записи стабильных ключей сдвигаются назад внутри цепочек
+        int churn = 20_000;
+        for (int round = 0; round < 100; round++) {
+            PlayerSizeTable table = tableWithStableKeys(stable);
+            current.set(table);
+            for (int i = 0; i < churn; i++) {
+                table.putSize(key(1, i), sizeOf(i));
+            }
+            for (int i = 0; i < churn; i++) {
+                table.remove(key(1, i));
+            }
+            assertEquals(stable, table.sizeCount());
+        }
+        running.set(false);
+
+        long totalReads = 0;
+        for (Future<Long> future : reads) {
+            totalReads += future.get(30, TimeUnit.SECONDS);
+        }
+        readers.shutdown();
+
+        assertTrue(errors.isEmpty(), errors.size() + " ошибок, первая: " + errors.peek());
+        assertTrue(totalReads > 0);
+    }
+
+    private static PlayerSizeTable tableWithStableKeys(int stable) {
+        PlayerSizeTable table = new PlayerSizeTable();
+        for (int i = 0; i < stable; i++) {
+            table.putSize(key(0, i), sizeOf(i));
+        }
+        return table;
+    }
+
+    // Обход идет, пока другие потоки ставят и снимают размеры. Каждая запись встречается
+    // не больше одного раза и только с размером, который для нее когда-либо записывали
+    @Test
+    void forEachNeverSeesTornEntries() throws Exception {
+        PlayerSizeTable table = new PlayerSizeTable();
+        int keys = 5_000;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService writers = Executors.newFixedThreadPool(THREADS / 2);
+        List<Future<?>> writes = new ArrayList<>();
+        for (int w = 0; w < THREADS / 2; w++) {
+            int writer = w;
+            writes.add(writers.submit(() -> {
+                int step = 0;
+                while (running.get()) {
+                    int i = (step++ * 31 + writer) % keys;
+                    table.putSize(key(2, i), step % 2 == 0 ? sizeOf(i) : Double.NaN);
+                    if (step % 5 == 0) {
+                        table.remove(key(2, (i + 13) % keys));
+                    }
+                }
+            }));
+        }
+
+        List<String> errors = new ArrayList<>();
+        for (int pass = 0; pass < 200; pass++) {
+            Set<UUID> seen = new HashSet<>();
+            table.forEach((uuid, size, name) -> {
+                if (!seen.add(uuid)) {
+                    errors.add("повтор " + uuid);
+                }
+                int index = indexOf(uuid, keys);
+                if (index < 0 || size != sizeOf(index)) {
+                    errors.add(uuid + ": размер " + size);
+                }
+            });
+        }
+        running.set(false);
+        for (Future<?> future : writes) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        writers.shutdown();
+
+        assertTrue(errors.isEmpty(), errors.size() + " ошибок, первая: " + (errors.isEmpty() ? "" : errors.get(0)));
+    }
+
+    private static int indexOf(UUID uuid, int keys) {
+        for (int i = 0; i < keys; i++) {
+            if (key(2, i).equals(uuid)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    // Все потоки стартуют одновременно, чтобы записи действительно пересекались
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                worker.run(thread);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
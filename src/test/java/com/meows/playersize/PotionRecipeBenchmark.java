@@ -0,0 +1,27 @@
+package com.meows.playersize;
+
+import java.util.Random;
+import org.bukkit.inventory.ItemStack;
+
+// Проверка сетки крафта: скомпилированный рецепт против подсчета через HashMap на каждый вызов.
+// Сетки те же, что в PotionRecipeTest: рецепт по умолчанию с одной-двумя заменами и перестановками
+public class PotionRecipeBenchmark {
+
+    public static void main(String[] args) {
+        PotionRecipe recipe = PotionRecipeTest.compile(PotionRecipeTest.DEFAULT_RECIPE);
+        PotionRecipeTest.NaiveRecipe naive = new PotionRecipeTest.NaiveRecipe(PotionRecipeTest.DEFAULT_RECIPE);
+
+        Random random = new Random(7);
+        ItemStack[][] grids = new ItemStack[1024][];
+        for (int i = 0; i < grids.length; i++) {
+            grids[i] = PotionRecipeTest.nearMiss(PotionRecipeTest.DEFAULT_RECIPE, random);
+        }
+        int mask = grids.length - 1;
+
+        double compiled = MicroBenchmark.run("PotionRecipe.matches", 1_000_000,
+                i -> recipe.matches(grids[i & mask]) ? 1 : 0);
+        double map = MicroBenchmark.run("HashMap на каждый вызов", 1_000_000,
+                i -> naive.matches(grids[i & mask]) ? 1 : 0);
+        System.out.printf("Ускорение: %.1fx%n", map / compiled);
+    }
+}
@@ -0,0 +1,206 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.Test;
+
+// Скомпилированный рецепт зелья против простой проверки через HashMap (как до компиляции рецепта):
+// на любой сетке обе проверки должны давать одинаковый ответ
+class PotionRecipeTest {
+
+    // Рецепт из config.yml по умолчанию
+    static final List<String> DEFAULT_RECIPE = List.of("NETHER_STAR", "BROWN_MUSHROOM", "POTION", "ENDER_EYE",
+            "DRAGON_BREATH", "PHANTOM_MEMBRANE", "SPIDER_EYE", "DIAMOND", "ENCHANTED_GOLDEN_APPLE");
+
+    // Материалы для случайных сеток: все из рецепта, все грибы и посторонние предметы
+    static final Material[] GRID_MATERIALS = {
+            Material.NETHER_STAR, Material.BROWN_MUSHROOM, Material.RED_MUSHROOM, Material.CRIMSON_FUNGUS,
+            Material.WARPED_FUNGUS, Material.POTION, Material.ENDER_EYE, Material.DRAGON_BREATH,
+            Material.PHANTOM_MEMBRANE, Material.SPIDER_EYE, Material.DIAMOND, Material.ENCHANTED_GOLDEN_APPLE,
+            Material.GLASS_BOTTLE };
+
+    static PotionRecipe compile(List<String> items) {
+        List<String> invalid = new ArrayList<>();
+        PotionRecipe recipe = PotionRecipe.compile(items, invalid);
+        assertTrue(invalid.isEmpty(), "некорректные материалы: " + invalid);
+        return recipe;
+    }
+
+    static ItemStack[] grid(Material... materials) {
+        ItemStack[] matrix = new ItemStack[9];
+        for (int i = 0; i < materials.length; i++) {
+            matrix[i] = materials[i] != null ? new ItemStack(materials[i]) : null;
+        }
+        return matrix;
+    }
+
+    static ItemStack[] defaultGrid() {
+        List<Material> materials = new ArrayList<>();
+        for (String item : DEFAULT_RECIPE) {
+            materials.add(Material.valueOf(item));
+        }
+        return grid(materials.toArray(new Material[0]));
+    }
+
+    @Test
+    void defaultRecipeMatchesInAnyOrder() {
+        PotionRecipe recipe = compile(DEFAULT_RECIPE);
+        assertEquals(9, recipe.getTotalSlots());
+        assertEquals(9, recipe.getClassCount());
+
+        List<ItemStack> items = new ArrayList<>(List.of(defaultGrid()));
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            Collections.shuffle(items, random);
+            assertTrue(recipe.matches(items.toArray(new ItemStack[0])));
+        }
+    }
+
+    @Test
+    void anyMushroomReplacesAnyOther() {
+        PotionRecipe recipe = compile(DEFAULT_RECIPE);
+        for (Material mushroom : PotionRecipe.MUSHROOM_MATERIALS) {
+            ItemStack[] matrix = defaultGrid();
+            matrix[1] = new ItemStack(mushroom);
+            assertTrue(recipe.matches(matrix), mushroom.name());
+            assertEquals(recipe.classOf(Material.BROWN_MUSHROOM), recipe.classOf(mushroom));
+        }
+    }
+
+    @Test
+    void rejectsMissingExtraAndForeignItems() {
+        PotionRecipe recipe = compile(DEFAULT_RECIPE);
+
+        ItemStack[] missing = defaultGrid();
+        missing[8] = null;
+        assertFalse(recipe.matches(missing));
+
+        ItemStack[] foreign = defaultGrid();
+        foreign[8] = new ItemStack(Material.GLASS_BOTTLE);
+        assertFalse(recipe.matches(foreign));
+
+        // Второй гриб вместо алмаза: слотов столько же, но гриб лишний, а алмаза нет
+        ItemStack[] doubled = defaultGrid();
+        doubled[7] = new ItemStack(Material.RED_MUSHROOM);
+        assertFalse(recipe.matches(doubled));
+
+        assertFalse(recipe.matches(new ItemStack[9]));
+        assertFalse(recipe.matches(grid(Material.AIR, Material.AIR)));
+    }
+
+    @Test
+    void repeatedIngredientsNeedEveryCopy() {
+        PotionRecipe recipe = compile(List.of("DIAMOND", "DIAMOND", "RED_MUSHROOM", "WARPED_FUNGUS"));
+        // Два разных гриба в рецепте - один класс "любой гриб" на два слота
+        assertEquals(2, recipe.getClassCount());
+        assertEquals(2, recipe.getRequired(recipe.classOf(Material.BROWN_MUSHROOM)));
+
+        assertTrue(recipe.matches(grid(Material.DIAMOND, Material.BROWN_MUSHROOM, Material.DIAMOND,
+                Material.BROWN_MUSHROOM)));
+        assertFalse(recipe.matches(grid(Material.DIAMOND, Material.BROWN_MUSHROOM, Material.DIAMOND,
+                Material.DIAMOND)));
+        assertFalse(recipe.matches(grid(Material.DIAMOND, Material.BROWN_MUSHROOM, Material.BROWN_MUSHROOM,
+                Material.BROWN_MUSHROOM)));
+    }
+
+    @Test
+    void invalidMaterialsAreReported() {
+        List<String> invalid = new ArrayList<>();
+        PotionRecipe recipe = PotionRecipe.compile(List.of("DIAMOND", "NOT_A_MATERIAL"), invalid);
+        assertEquals(List.of("NOT_A_MATERIAL"), invalid);
+        assertEquals(1, recipe.getTotalSlots());
+        assertTrue(recipe.matches(grid(Material.DIAMOND)));
+
+        assertFalse(PotionRecipe.compile(List.of(), new ArrayList<>()).matches(new ItemStack[9]));
+    }
+
+    // Случайные сетки, близкие к рецепту (одна-две замены, пропуски, перестановки):
+    // ответ должен совпадать с простой проверкой
+    @Test
+    void agreesWithNaiveMatcherOnRandomGrids() {
+        Random random = new Random(42);
+        List<List<String>> recipes = List.of(DEFAULT_RECIPE,
+                List.of("DIAMOND", "DIAMOND", "BROWN_MUSHROOM", "CRIMSON_FUNGUS", "SPIDER_EYE"),
+                List.of("NETHER_STAR", "POTION"));
+        int matched = 0;
+        for (List<String> items : recipes) {
+            PotionRecipe recipe = compile(items);
+            NaiveRecipe naive = new NaiveRecipe(items);
+            for (int i = 0; i < 20_000; i++) {
+                ItemStack[] matrix = nearMiss(items, random);
+                boolean expected = naive.matches(matrix);
+                assertEquals(expected, recipe.matches(matrix), items + " " + describe(matrix));
+                if (expected) {
+                    matched++;
+                }
+            }
+        }
+        // Среди случайных сеток должны быть и подходящие, иначе сравнение ничего не проверяет
+        assertTrue(matched > 1000, "подходящих сеток: " + matched);
+    }
+
+    static ItemStack[] nearMiss(List<String> items, Random random) {
+        List<ItemStack> slots = new ArrayList<>();
+        for (String item : items) {
+            slots.add(new ItemStack(Material.valueOf(item)));
+        }
+        while (slots.size() < 9) {
+            slots.add(null);
+        }
+        int changes = random.nextInt(3);
+        for (int c = 0; c < changes; c++) {
+            int slot = random.nextInt(9);
+            slots.set(slot, random.nextInt(4) == 0 ? null
+                    : new ItemStack(GRID_MATERIALS[random.nextInt(GRID_MATERIALS.length)]));
+        }
+        Collections.shuffle(slots, random);
+        return slots.toArray(new ItemStack[0]);
+    }
+
+    private static String describe(ItemStack[] matrix) {
+        List<String> names = new ArrayList<>();
+        for (ItemStack item : matrix) {
+            names.add(item != null ? item.getType().name() : "-");
+        }
+        return names.toString();
+    }
+
+    // Проверка "в лоб": подсчет слотов по материалам в HashMap на каждый вызов, грибы приводятся к одному.
+    // Сетка подходит, если мультимножества слотов совпадают
+    static final class NaiveRecipe {
+        private final Map<Material, Integer> required = new HashMap<>();
+
+        NaiveRecipe(List<String> items) {
+            for (String item : items) {
+                required.merge(normalize(Material.valueOf(item)), 1, Integer::sum);
+            }
+        }
+
+        boolean matches(ItemStack[] matrix) {
+            if (required.isEmpty()) {
+                return false;
+            }
+            Map<Material, Integer> present = new HashMap<>();
+            for (ItemStack item : matrix) {
+                if (item != null && item.getType() != Material.AIR) {
+                    present.merge(normalize(item.getType()), 1, Integer::sum);
+                }
+            }
+            return present.equals(required);
+        }
+
+        private static Material normalize(Material material) {
+            return PotionRecipe.MUSHROOM_MATERIALS.contains(material) ? Material.BROWN_MUSHROOM : material;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.meows.playersize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Выбор размера: таблицы, собранные при загрузке конфига, против расчета на каждый вызов -
+// перебора корзин по накопленным весам и отбраковки нормального распределения за пределами диапазона.
+// Отбраковке нужен поток случайных чисел, а размер по умолчанию получается из одного числа от UUID,
+// поэтому для нормального распределения важна не скорость, а то, что таблица не намного медленнее
+public class SizeDistributionBenchmark {
+
+    public static void main(String[] args) {
+        SplittableRandom random = new SplittableRandom(3);
+
+        SizeDistribution normal = SizeDistribution.truncatedNormal(0.60, 0.83, 0.72, 0.05);
+        MicroBenchmark.run("Нормальное: таблица", 1_000_000,
+                i -> Double.doubleToRawLongBits(normal.sample(random.nextDouble())));
+        MicroBenchmark.run("Нормальное: отбраковка", 1_000_000,
+                i -> Double.doubleToRawLongBits(rejectNormal(random, 0.60, 0.83, 0.72, 0.05)));
+
+        for (int count : new int[] { 3, 32 }) {
+            List<SizeDistribution.Bucket> buckets = new ArrayList<>();
+            for (int b = 0; b < count; b++) {
+                double min = 0.5 + b * 1.0 / count;
+                buckets.add(new SizeDistribution.Bucket(min, min + 1.0 / count, 1 + (b * 7) % 5));
+            }
+            SizeDistribution alias = SizeDistribution.buckets(buckets);
+            LinearBuckets linear = new LinearBuckets(buckets);
+            double table = MicroBenchmark.run("Корзины (" + count + "): таблица псевдонимов", 1_000_000,
+                    i -> Double.doubleToRawLongBits(alias.sample(random.nextDouble())));
+            double scan = MicroBenchmark.run("Корзины (" + count + "): перебор", 1_000_000,
+                    i -> Double.doubleToRawLongBits(linear.sample(random)));
+            System.out.printf("Ускорение: %.1fx%n", scan / table);
+        }
+    }
+
+    private static double rejectNormal(SplittableRandom random, double min, double max, double mean,
+            double stdDev) {
+        double size;
+        do {
+            size = mean + stdDev * random.nextGaussian();
+        } while (size < min || size > max);
+        return size;
+    }
+
+    // Выбор корзины перебором накопленных весов, затем размер внутри корзины вторым числом
+    private static final class LinearBuckets {
+        private final double[] cumulative;
+        private final double[] mins;
+        private final double[] widths;
+
+        LinearBuckets(List<SizeDistribution.Bucket> buckets) {
+            cumulative = new double[buckets.size()];
+            mins = new double[buckets.size()];
+            widths = new double[buckets.size()];
+            double total = 0;
+            for (int i = 0; i < buckets.size(); i++) {
+                SizeDistribution.Bucket bucket = buckets.get(i);
+                total += bucket.weight;
+                cumulative[i] = total;
+                mins[i] = bucket.min;
+                widths[i] = bucket.max - bucket.min;
+            }
+        }
+
+        double sample(SplittableRandom random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int bucket = 0;
+            while (bucket < cumulative.length - 1 && cumulative[bucket] <= target) {
+                bucket++;
+            }
+            return mins[bucket] + widths[bucket] * random.nextDouble();
+        }
+    }
+}
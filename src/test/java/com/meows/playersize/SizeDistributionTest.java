@@ -0,0 +1,135 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+// Распределения из sizes.distribution: доли корзин по весам, границы и форма обрезанного нормального.
+// Выборки случайные, но с фиксированным зерном, поэтому тест воспроизводим
+class SizeDistributionTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    // Корзины 1:6:3 и нормальное распределение из примера в config.yml
+    static final List<SizeDistribution.Bucket> BUCKETS = List.of(
+            new SizeDistribution.Bucket(0.60, 0.66, 1),
+            new SizeDistribution.Bucket(0.66, 0.76, 6),
+            new SizeDistribution.Bucket(0.76, 0.83, 3));
+
+    @Test
+    void bucketsFollowWeights() {
+        SizeDistribution distribution = SizeDistribution.buckets(BUCKETS);
+        SplittableRandom random = new SplittableRandom(1);
+        long[] counts = new long[3];
+        double[] sums = new double[3];
+        for (int i = 0; i < SAMPLES; i++) {
+            double size = distribution.sample(random.nextDouble());
+            assertTrue(size >= 0.60 && size < 0.83, "размер вне корзин: " + size);
+            int bucket = size < 0.66 ? 0 : size < 0.76 ? 1 : 2;
+            counts[bucket]++;
+            sums[bucket] += size;
+        }
+
+        // Стандартное отклонение доли при миллионе выборок - не больше 0.0005
+        assertEquals(0.1, counts[0] / (double) SAMPLES, 0.003);
+        assertEquals(0.6, counts[1] / (double) SAMPLES, 0.003);
+        assertEquals(0.3, counts[2] / (double) SAMPLES, 0.003);
+        // Внутри корзины размер равномерный - среднее в середине корзины
+        assertEquals(0.63, sums[0] / counts[0], 0.001);
+        assertEquals(0.71, sums[1] / counts[1], 0.001);
+        assertEquals(0.795, sums[2] / counts[2], 0.001);
+    }
+
+    @Test
+    void zeroWeightBucketIsNeverChosen() {
+        SizeDistribution distribution = SizeDistribution.buckets(List.of(
+                new SizeDistribution.Bucket(0.5, 0.8, 1),
+                new SizeDistribution.Bucket(0.8, 1.1, 0),
+                new SizeDistribution.Bucket(1.1, 1.5, 1)));
+        for (int i = 0; i < 100_000; i++) {
+            double size = distribution.sample(i / 100_000.0);
+            assertTrue(size < 0.8 || size >= 1.1, "выбрана корзина с нулевым весом: " + size);
+        }
+    }
+
+    @Test
+    void truncatedNormalMatchesDensity() {
+        double min = 0.60;
+        double max = 0.83;
+        double mean = 0.72;
+        double stdDev = 0.05;
+        SizeDistribution distribution = SizeDistribution.truncatedNormal(min, max, mean, stdDev);
+
+        double[] points = { 0.62, 0.67, 0.72, 0.77, 0.81 };
+        long[] below = new long[points.length];
+        double sum = 0;
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < SAMPLES; i++) {
+            double size = distribution.sample(random.nextDouble());
+            assertTrue(size >= min && size <= max, "размер вне диапазона: " + size);
+            sum += size;
+            for (int p = 0; p < points.length; p++) {
+                if (size <= points[p]) {
+                    below[p]++;
+                }
+            }
+        }
+
+        // Ожидаемые значения - интегралы плотности по Симпсону, независимо от таблицы в SizeDistribution
+        double total = integrate(min, max, mean, stdDev, false);
+        assertEquals(integrate(min, max, mean, stdDev, true) / total, sum / SAMPLES, 0.0005);
+        for (int p = 0; p < points.length; p++) {
+            double expected = integrate(min, points[p], mean, stdDev, false) / total;
+            assertEquals(expected, below[p] / (double) SAMPLES, 0.003, "доля размеров <= " + points[p]);
+        }
+    }
+
+    @Test
+    void truncatedNormalCoversWholeRange() {
+        SizeDistribution distribution = SizeDistribution.truncatedNormal(0.5, 1.5, 1.0, 0.3);
+        assertEquals(0.5, distribution.sample(0.0), 1e-12);
+        assertEquals(1.5, distribution.sample(Math.nextDown(1.0)), 1e-3);
+
+        // Обратная функция распределения не убывает
+        double previous = 0.5;
+        for (int i = 1; i < 10_000; i++) {
+            double size = distribution.sample(i / 10_000.0);
+            assertTrue(size >= previous, "таблица не монотонна в точке " + i);
+            previous = size;
+        }
+    }
+
+    @Test
+    void meanFarOutsideRangeFallsBackToUniform() {
+        // Плотность внутри диапазона неотличима от нуля - равномерное распределение вместо деления на ноль
+        SizeDistribution distribution = SizeDistribution.truncatedNormal(0.5, 1.5, 100.0, 0.1);
+        assertEquals(SizeDistribution.uniform(0.5, 1.5), distribution);
+        assertEquals(1.0, distribution.sample(0.5), 1e-12);
+    }
+
+    @Test
+    void sameSettingsBuildEqualDistributions() {
+        // По equals перезагрузка конфига понимает, что размеры не менялись
+        assertEquals(SizeDistribution.buckets(BUCKETS), SizeDistribution.buckets(List.copyOf(BUCKETS)));
+        assertEquals(SizeDistribution.truncatedNormal(0.5, 1.5, 0.8, 0.25),
+                SizeDistribution.truncatedNormal(0.5, 1.5, 0.8, 0.25));
+        assertEquals(SizeDistribution.uniform(0.5, 1.5), SizeDistribution.uniform(0.5, 1.5));
+    }
+
+    // Интеграл плотности (или x * плотность) от from до to по формуле Симпсона
+    private static double integrate(double from, double to, double mean, double stdDev, boolean weighted) {
+        int steps = 20_000;
+        double step = (to - from) / steps;
+        double sum = 0;
+        for (int i = 0; i <= steps; i++) {
+            double x = from + i * step;
+            double z = (x - mean) / stdDev;
+            double value = Math.exp(-0.5 * z * z) * (weighted ? x : 1.0);
+            sum += value * (i == 0 || i == steps ? 1 : i % 2 == 0 ? 2 : 4);
+        }
+        return sum * step / 3;
+    }
+}
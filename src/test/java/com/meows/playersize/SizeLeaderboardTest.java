@@ -0,0 +1,159 @@
+package com.meows.playersize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+// Таблица лидеров: места при равных размерах (порядок по UUID), обновления и удаления,
+// страницы и обход, во время которого таблица меняется
+class SizeLeaderboardTest {
+
+    // Порядок таблицы: размер по убыванию, при равенстве - UUID по возрастанию
+    private static final Comparator<Map.Entry<UUID, Double>> ORDER =
+            Map.Entry.<UUID, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private static List<UUID> page(SizeLeaderboard board, int from, int limit) {
+        List<UUID> out = new ArrayList<>();
+        board.page(from, limit, (position, uuid, size) -> {
+            assertEquals(from + out.size(), position);
+            out.add(uuid);
+        });
+        return out;
+    }
+
+    @Test
+    void equalSizesAreOrderedByUuid() {
+        SizeLeaderboard board = new SizeLeaderboard();
+        UUID first = new UUID(0, 1);
+        UUID second = new UUID(0, 2);
+        UUID third = new UUID(1, 0);
+        UUID tall = new UUID(5, 5);
+        board.update(third, Double.NaN, 0.7);
+        board.update(first, Double.NaN, 0.7);
+        board.update(tall, Double.NaN, 0.9);
+        board.update(second, Double.NaN, 0.7);
+
+        assertEquals(1, board.rank(tall, 0.9));
+        assertEquals(2, board.rank(first, 0.7));
+        assertEquals(3, board.rank(second, 0.7));
+        assertEquals(4, board.rank(third, 0.7));
+        assertEquals(List.of(tall, first, second, third), page(board, 0, 10));
+        // Место ищется по паре (размер, UUID): с чужим размером игрока не найти
+        assertEquals(-1, board.rank(first, 0.8));
+        assertEquals(-1, board.rank(UUID.randomUUID(), 0.7));
+    }
+
+    @Test
+    void updateMovesAndNaNRemoves() {
+        SizeLeaderboard board = new SizeLeaderboard();
+        UUID a = new UUID(0, 1);
+        UUID b = new UUID(0, 2);
+        UUID c = new UUID(0, 3);
+        board.update(a, Double.NaN, 0.6);
+        board.update(b, Double.NaN, 0.7);
+        board.update(c, Double.NaN, 0.8);
+        assertEquals(List.of(c, b, a), page(board, 0, 10));
+
+        board.update(a, 0.6, 0.95);
+        assertEquals(1, board.rank(a, 0.95));
+        assertEquals(-1, board.rank(a, 0.6));
+        assertEquals(List.of(a, c, b), page(board, 0, 10));
+
+        board.update(c, 0.8, Double.NaN);
+        assertEquals(2, board.size());
+        assertEquals(-1, board.rank(c, 0.8));
+        assertEquals(List.of(a, b), page(board, 0, 10));
+
+        board.clear();
+        assertEquals(0, board.size());
+        assertEquals(List.of(), page(board, 0, 10));
+    }
+
+    @Test
+    void pagesSplitTheWholeTable() {
+        SizeLeaderboard board = new SizeLeaderboard();
+        for (int i = 0; i < 95; i++) {
+            board.update(new UUID(0, i), Double.NaN, 0.5 + (i % 7) / 10.0);
+        }
+        List<UUID> all = page(board, 0, Integer.MAX_VALUE);
+        assertEquals(95, all.size());
+
+        List<UUID> joined = new ArrayList<>();
+        for (int from = 0; from < 95; from += 10) {
+            List<UUID> page = page(board, from, 10);
+            assertEquals(Math.min(10, 95 - from), page.size());
+            joined.addAll(page);
+        }
+        assertEquals(all, joined);
+        assertEquals(List.of(), page(board, 95, 10));
+        assertEquals(List.of(), page(board, 1000, 10));
+        assertEquals(List.of(), page(board, 0, 0));
+    }
+
+    @Test
+    void agreesWithSortedModelOnRandomChanges() {
+        Random random = new Random(17);
+        SizeLeaderboard board = new SizeLeaderboard();
+        Map<UUID, Double> model = new HashMap<>();
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            UUID uuid = uuids.get(random.nextInt(uuids.size()));
+            double previous = model.getOrDefault(uuid, Double.NaN);
+            // Мало различных размеров - много равных, порядок решает UUID
+            double next = random.nextInt(5) == 0 ? Double.NaN : 0.6 + random.nextInt(10) / 40.0;
+            board.update(uuid, previous, next);
+            if (Double.isNaN(next)) {
+                model.remove(uuid);
+            } else {
+                model.put(uuid, next);
+            }
+        }
+
+        List<Map.Entry<UUID, Double>> sorted = new ArrayList<>(model.entrySet());
+        sorted.sort(ORDER);
+        List<UUID> expected = new ArrayList<>();
+        for (Map.Entry<UUID, Double> entry : sorted) {
+            expected.add(entry.getKey());
+        }
+        assertEquals(expected, page(board, 0, Integer.MAX_VALUE));
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i + 1, board.rank(sorted.get(i).getKey(), sorted.get(i).getValue()));
+        }
+    }
+
+    @Test
+    void fullScanSeesEachEntryOnceWhileTableChanges() {
+        SizeLeaderboard board = new SizeLeaderboard();
+        Map<UUID, Double> sizes = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            UUID uuid = UUID.randomUUID();
+            sizes.put(uuid, 0.6 + (i % 100) / 500.0);
+            board.update(uuid, Double.NaN, sizes.get(uuid));
+        }
+
+        // Каждый посещенный игрок опускается в самый низ - обход без снимка пропускал бы
+        // и повторял записи на границах порций
+        Set<UUID> seen = new HashSet<>();
+        board.page(0, Integer.MAX_VALUE, (position, uuid, size) -> {
+            assertEquals(sizes.get(uuid), size);
+            assertTrue(seen.add(uuid), "запись повторилась: " + uuid);
+            board.update(uuid, sizes.get(uuid), 0.1);
+            sizes.put(uuid, 0.1);
+        });
+        assertEquals(sizes.keySet(), seen);
+    }
+}
@@ -0,0 +1,81 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Запуск сервера: чтение всех записей из player_sizes.json против player_sizes.dat
+// и однократный импорт json в binary при первом запуске. Записи читаются в MemoryRecords,
+// поэтому таблица, индекс ников и таблица лидеров PlayerSizeManager (их строят оба формата) не входят.
+// Аргументы - числа игроков, по умолчанию 100000
+public class StorageStartupBenchmark {
+
+    private static final int ROUNDS = 3;
+    private static final Logger LOGGER = Logger.getLogger(StorageStartupBenchmark.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        LOGGER.setLevel(Level.WARNING);
+        int[] counts = args.length > 0
+                ? Stream.of(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 100_000 };
+
+        System.out.printf("%9s %22s %22s %14s%n", "игроков", "json: загрузка", "binary: загрузка",
+                "binary: импорт");
+        for (int count : counts) {
+            run(count);
+        }
+    }
+
+    private static void run(int count) throws IOException {
+        File folder = Files.createTempDirectory("playersize-bench").toFile();
+        try {
+            MemoryRecords records = new MemoryRecords();
+            for (int i = 0; i < count; i++) {
+                records.set(UUID.randomUUID(), (6000 + i % 2300) / 10000.0, "Player" + i);
+            }
+            JsonPlayerStorage seed = new JsonPlayerStorage(folder, LOGGER, false);
+            seed.save(records, records.keys());
+            seed.close();
+            long jsonBytes = new File(folder, JsonPlayerStorage.DATA_FILE).length();
+
+            double jsonMs = bestLoad(() -> new JsonPlayerStorage(folder, LOGGER, false), count);
+
+            long start = System.nanoTime();
+            MappedPlayerStorage imported = new MappedPlayerStorage(folder, LOGGER);
+            imported.load(new MemoryRecords());
+            imported.close();
+            double importMs = (System.nanoTime() - start) / 1e6;
+            long binaryBytes = new File(folder, MappedPlayerStorage.DATA_FILE).length()
+                    + new File(folder, MappedPlayerStorage.NAMES_FILE).length();
+
+            double binaryMs = bestLoad(() -> new MappedPlayerStorage(folder, LOGGER), count);
+
+            System.out.printf("%,9d %8.0f мс / %5.1f МБ %8.0f мс / %5.1f МБ %11.0f мс%n", count,
+                    jsonMs, jsonBytes / 1048576.0, binaryMs, binaryBytes / 1048576.0, importMs);
+        } finally {
+            StorageWriteBenchmark.delete(folder);
+        }
+    }
+
+    // Лучшее время полной загрузки из ROUNDS попыток
+    private static double bestLoad(Supplier<PlayerDataStorage> storages, int count) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            MemoryRecords loaded = new MemoryRecords();
+            long start = System.nanoTime();
+            PlayerDataStorage storage = storages.get();
+            storage.load(loaded);
+            storage.close();
+            best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            if (loaded.names.size() != count) {
+                throw new IllegalStateException("загружено " + loaded.names.size() + " из " + count);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,103 @@
+package com.meows.playersize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+// Усиление записи форматов хранения: сколько байт уходит на диск на одно изменение размера.
+// N сохраненных игроков, 2000 случайных изменений, сохранение пачками по 20 (как PlayerSaveManager).
+// json переписывает весь файл, журнал только дописывает записи (2000 записей не доходят до порога
+// сжатия по умолчанию в 1024 КБ), binary меняет только слоты.
+// Аргументы - числа игроков, по умолчанию 10000 и 100000
+public class StorageWriteBenchmark {
+
+    private static final int CHANGES = 2000;
+    private static final int BATCH = 20;
+    private static final Logger LOGGER = Logger.getLogger(StorageWriteBenchmark.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        LOGGER.setLevel(Level.WARNING);
+        int[] counts = args.length > 0
+                ? Stream.of(args).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 10_000, 100_000 };
+
+        System.out.printf("%-8s %9s %14s %11s %11s%n", "формат", "игроков", "байт/изменение",
+                "сохр. ср.", "сохр. макс.");
+        for (String format : new String[] { "json", "journal", "binary" }) {
+            for (int count : counts) {
+                run(format, count);
+            }
+        }
+    }
+
+    private static void run(String format, int count) throws IOException {
+        File folder = Files.createTempDirectory("playersize-bench").toFile();
+        try {
+            // Исходные данные в json, остальные форматы переносят их при загрузке
+            MemoryRecords records = new MemoryRecords();
+            List<UUID> uuids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID uuid = UUID.randomUUID();
+                uuids.add(uuid);
+                records.set(uuid, 0.6 + i % 20 / 100.0, "Player" + i);
+            }
+            JsonPlayerStorage seed = new JsonPlayerStorage(folder, LOGGER, false);
+            seed.save(records, records.keys());
+            seed.close();
+
+            PlayerDataStorage storage = open(format, folder);
+            storage.load(new MemoryRecords());
+            long bytesBefore = storage.getBytesWritten();
+
+            SplittableRandom random = new SplittableRandom(1);
+            long totalNanos = 0;
+            long maxNanos = 0;
+            for (int i = 0; i < CHANGES; i += BATCH) {
+                List<UUID> dirty = new ArrayList<>(BATCH);
+                for (int j = 0; j < BATCH; j++) {
+                    UUID uuid = uuids.get(random.nextInt(count));
+                    records.set(uuid, 0.5 + random.nextInt(50) / 100.0, null);
+                    dirty.add(uuid);
+                }
+                long start = System.nanoTime();
+                storage.save(records, dirty);
+                long elapsed = System.nanoTime() - start;
+                totalNanos += elapsed;
+                maxNanos = Math.max(maxNanos, elapsed);
+            }
+            long bytes = storage.getBytesWritten() - bytesBefore;
+            storage.close();
+
+            System.out.printf("%-8s %,9d %,14d %8.1f мс %8.1f мс%n", format, count, bytes / CHANGES,
+                    totalNanos / 1e6 / (CHANGES / BATCH), maxNanos / 1e6);
+        } finally {
+            delete(folder);
+        }
+    }
+
+    private static PlayerDataStorage open(String format, File folder) {
+        switch (format) {
+            case "journal":
+                return new JournalPlayerStorage(folder, LOGGER, () -> 1024 * 1024L);
+            case "binary":
+                return new MappedPlayerStorage(folder, LOGGER);
+            default:
+                return new JsonPlayerStorage(folder, LOGGER, false);
+        }
+    }
+
+    static void delete(File folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}